@@ -0,0 +1,198 @@
+package bench;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import logist.task.TaskSet;
+import sls.SearchMetrics;
+import sls.SearchOptions;
+import sls.StochasticLocalSearch;
+import utils.TopologyCache;
+
+/**
+ * Headless batch runner: runs the stochastic local search on the configurations of config/ over a matrix of
+ * seeds, task counts and time budgets, without the logist platform, and reports for every run the
+ * iterations/s, the time to reach the target cost and the final cost.
+ *
+ * The seed draws both the tasks (from the task distribution of the configuration) and the random choices
+ * of the search. The solver is set up from the same system properties as {@link template.CentralizedTemplate}
+ * (see {@link SearchOptions}), so by default it runs what the agent runs, and the runs are spread over the
+ * cores (each one uses sls.threads of them). The target cost of an instance is the best final cost of its
+ * runs (one per budget) plus TARGET_TOLERANCE, so the time to target tells how fast each run got close to the
+ * best known solution (NaN if it never did).
+ *
+ * The acceptance strategies are one more axis of the matrix (sls.acceptance by default), so that the target of an
+ * instance is the best cost any of them reached.
+ *
+ * Usage: bench.BatchRunner [configs] [seeds] [taskCounts] [budgetsMs] [report.csv|-] [acceptances], each a comma
+ * separated list, e.g.
+ *   java -Dsls.bestInsertion=true -cp "lib/*:bin" bench.BatchRunner config/centralized.xml 1,2,3 30,100 2000,10000 report.csv default,sa,lahc,ta
+ */
+public class BatchRunner {
+
+    private static final String[] CONFIGS = {"config/centralized.xml"};
+    private static final long[] SEEDS = {1, 2, 3};
+    private static final int[] TASK_COUNTS = {30, 100};
+    private static final long[] BUDGETS = {2000, 10000};
+    private static final double TARGET_TOLERANCE = 0.01;  // The target is 1% above the best final cost
+
+    private static final double CHOICE_PROBABILITY = 0.45;
+
+    /**
+     * The result of one run of the matrix.
+     */
+    private static class Run {
+        final String config;
+        final int numTasks;
+        final long seed;
+        final long budget;
+        final String acceptance;
+        long iterations;
+        double iterationsPerSecond;
+        double finalCost;
+        List<double[]> bestCostCurve;  // {elapsed ms, iterations, best cost} on every improvement
+        double targetCost = Double.NaN;
+        double timeToTarget = Double.NaN;
+
+        Run(String config, int numTasks, long seed, long budget, String acceptance) {
+            this.config = config;
+            this.numTasks = numTasks;
+            this.seed = seed;
+            this.budget = budget;
+            this.acceptance = acceptance;
+        }
+
+        // The runs of the same instance only differ by their budget and acceptance strategy
+        String instance() {
+            return config + "/" + numTasks + "/" + seed;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] configs = args.length > 0 ? args[0].split(",") : CONFIGS;
+        long[] seeds = args.length > 1 ? Arrays.stream(args[1].split(",")).mapToLong(Long::parseLong).toArray() : SEEDS;
+        int[] taskCounts = args.length > 2 ? Arrays.stream(args[2].split(",")).mapToInt(Integer::parseInt).toArray() : TASK_COUNTS;
+        long[] budgets = args.length > 3 ? Arrays.stream(args[3].split(",")).mapToLong(Long::parseLong).toArray() : BUDGETS;
+        String report = args.length > 4 && !"-".equals(args[4]) ? args[4] : null;
+        String[] acceptances = args.length > 5 ? args[5].split(",") : new String[] {System.getProperty("sls.acceptance", "default")};
+
+        SearchOptions options = SearchOptions.fromSystemProperties();
+        for (String acceptance: acceptances) {
+            new SearchOptions().setAcceptance(acceptance);  // Fail on an unknown strategy before running anything
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("[INF] Running " + configs.length * seeds.length * taskCounts.length * budgets.length * acceptances.length
+                + " configurations on " + cores + " cores with " + options + " (acceptances " + String.join(",", acceptances) + ")");
+
+        // Silence the progress messages of the searches while the matrix runs
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {}
+        }));
+
+        List<Run> runs = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, cores / options.getThreads()));
+        try {
+            List<Future<Run>> futures = new ArrayList<>();
+            for (String path: configs) {
+                Configuration config = Configuration.load(path);
+                TopologyCache topologyCache = new TopologyCache(config.getTopology());
+                for (int numTasks: taskCounts) {
+                    for (long seed: seeds) {
+                        TaskSet tasks = config.tasks(numTasks, seed);
+                        for (long budget: budgets) {
+                            for (String acceptance: acceptances) {
+                                SearchOptions runOptions = SearchOptions.fromSystemProperties();
+                                runOptions.setAcceptance(acceptance);
+                                Run run = new Run(config.getName(), numTasks, seed, budget, acceptance);
+                                futures.add(executor.submit(() -> execute(run, runOptions, config, topologyCache, tasks)));
+                            }
+                        }
+                    }
+                }
+            }
+            for (Future<Run> future: futures) {
+                runs.add(future.get());
+            }
+        }
+        finally {
+            executor.shutdown();
+            System.setOut(out);
+        }
+
+        computeTargets(runs);
+        print(runs);
+        if (report != null) {
+            writeCsv(runs, report);
+        }
+    }
+
+    // Run the search once and record its telemetry
+    private static Run execute(Run run, SearchOptions options, Configuration config, TopologyCache topologyCache, TaskSet tasks) {
+        StochasticLocalSearch sls = new StochasticLocalSearch(CHOICE_PROBABILITY, Integer.MAX_VALUE, run.budget, topologyCache);
+        sls.setSeed(run.seed);
+        options.applyTo(sls);
+        SearchMetrics metrics = new SearchMetrics();
+        sls.setMetrics(metrics);
+
+        sls.apply(config.getVehicles(), tasks);
+
+        run.iterations = metrics.getIterations();
+        run.iterationsPerSecond = metrics.getIterationsPerSecond();
+        run.finalCost = sls.getBestSoFar().cost();
+        run.bestCostCurve = metrics.getBestCostCurve();
+        return run;
+    }
+
+    // The target of every instance (configuration, task count and seed), and the time each run took to reach it
+    private static void computeTargets(List<Run> runs) {
+        Map<String, Double> bestCosts = new HashMap<>();
+        for (Run run: runs) {
+            bestCosts.merge(run.instance(), run.finalCost, Math::min);
+        }
+        for (Run run: runs) {
+            run.targetCost = bestCosts.get(run.instance()) * (1 + TARGET_TOLERANCE);
+            for (double[] point: run.bestCostCurve) {
+                if (point[2] <= run.targetCost) {
+                    run.timeToTarget = point[0];
+                    break;
+                }
+            }
+        }
+    }
+
+    private static void print(List<Run> runs) {
+        System.out.println(String.format("%-16s %6s %6s %8s %10s %12s %12s %12s %12s %14s",
+                "config", "tasks", "seed", "budget", "acceptance", "iterations", "iter/s", "final", "target", "time_to_target"));
+        for (Run run: runs) {
+            System.out.println(String.format("%-16s %6d %6d %8d %10s %12d %12.1f %12.1f %12.1f %14.0f",
+                    run.config, run.numTasks, run.seed, run.budget, run.acceptance, run.iterations, run.iterationsPerSecond,
+                    run.finalCost, run.targetCost, run.timeToTarget));
+        }
+    }
+
+    private static void writeCsv(List<Run> runs, String path) {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(path))) {
+            writer.println("config,tasks,seed,budget_ms,acceptance,iterations,iterations_per_s,final_cost,target_cost,time_to_target_ms");
+            for (Run run: runs) {
+                writer.println(run.config + "," + run.numTasks + "," + run.seed + "," + run.budget + "," + run.acceptance + "," + run.iterations + ","
+                        + run.iterationsPerSecond + "," + run.finalCost + "," + run.targetCost + "," + run.timeToTarget);
+            }
+        }
+        catch (IOException exc) {
+            System.out.println("There was a problem writing the report to " + path + ": " + exc);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package bench;
+
+import java.awt.Color;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import logist.config.Parsers;
+import logist.task.DefaultTaskDistribution;
+import logist.task.Policy;
+import logist.task.TaskSet;
+import logist.topology.Topology;
+import model.VarVehicle;
+
+/**
+ * A configuration file of the platform (e.g. config/centralized.xml) read without the platform:
+ * its topology, the vehicles of its companies and its task specification.
+ *
+ * The tasks are drawn from the task distribution of the configuration: the policies are built from
+ * the seed in the same order as the platform parser does, then the tasks come from the same generator.
+ */
+public class Configuration {
+
+    private final String name;
+    private final Topology topology;
+    private final List<VarVehicle> vehicles = new ArrayList<>();
+    private final Element tasksTag;
+    private final int numTasks;
+    private final long rngSeed;
+
+    private Configuration(String path) throws Exception {
+        Element root = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new File(path)).getDocumentElement();
+        this.name = new File(path).getName().replaceFirst("\\.xml$", "");
+
+        Element topologyTag = child(root, "topology");
+        if (!topologyTag.hasAttribute("import")) {
+            throw new IllegalArgumentException("Only imported topologies are supported: " + path);
+        }
+        this.topology = Parsers.parseTopology(topologyTag.getAttribute("import"));
+
+        this.tasksTag = child(root, "tasks");
+        this.numTasks = Integer.parseInt(this.tasksTag.getAttribute("number"));
+        this.rngSeed = Long.parseLong(this.tasksTag.getAttribute("rngSeed"));
+
+        // The vehicles of all the companies, indexed in order
+        NodeList vehicleTags = child(root, "companies").getElementsByTagName("vehicle");
+        for (int idx = 0; idx < vehicleTags.getLength(); idx++) {
+            Map<String, String> settings = new HashMap<>();
+            NodeList setTags = ((Element) vehicleTags.item(idx)).getElementsByTagName("set");
+            for (int setIdx = 0; setIdx < setTags.getLength(); setIdx++) {
+                Element setTag = (Element) setTags.item(setIdx);
+                settings.put(setTag.getAttributes().item(0).getNodeName(), setTag.getAttributes().item(0).getNodeValue());
+            }
+            this.vehicles.add(new VarVehicle(idx, Integer.parseInt(settings.get("capacity")), Integer.parseInt(settings.get("cost-per-km")),
+                    this.topology.parseCity(settings.get("home")), settings.containsKey("color") ? Color.decode(settings.get("color")) : Color.BLACK));
+        }
+    }
+
+    /**
+     * Load a configuration file (e.g. "config/centralized.xml")
+     */
+    public static Configuration load(String path) {
+        try {
+            return new Configuration(path);
+        }
+        catch (IllegalArgumentException exc) {
+            throw exc;
+        }
+        catch (Exception exc) {
+            throw new IllegalArgumentException("There was a problem loading the configuration " + path, exc);
+        }
+    }
+
+    /**
+     * @return The tasks of the configuration
+     */
+    public TaskSet tasks() {
+        return tasks(numTasks, rngSeed);
+    }
+
+    /**
+     * @return numTasks tasks drawn from the task distribution of the configuration with another seed
+     */
+    public TaskSet tasks(int numTasks, long seed) {
+        Random random = new Random(seed);
+        double[][] probabilities = policy(child(tasksTag, "probability"), random);
+        double[][] rewards = policy(child(tasksTag, "reward"), random);
+        double[][] weights = policy(child(tasksTag, "weight"), random);
+
+        double[] noTask = new double[topology.size()];
+        NodeList noTaskTags = tasksTag.getElementsByTagName("no-task");
+        if (noTaskTags.getLength() > 0) {
+            Element noTaskTag = (Element) noTaskTags.item(0);
+            double[] range = range(noTaskTag);
+            noTask = "uniform".equals(noTaskTag.getAttribute("distribution"))
+                    ? Policy.uniform(topology.size(), range[0], range[1], random)
+                    : Policy.constant(topology.size(), (range[0] + range[1]) / 2.0);
+        }
+
+        return new DefaultTaskDistribution(topology, random, probabilities, rewards, weights, noTask).createTaskSet(numTasks);
+    }
+
+    // The matrix of a policy tag (probability, reward or weight) like the platform parser builds it
+    private double[][] policy(Element policyTag, Random random) {
+        Policy policy;
+        switch (policyTag.hasAttribute("policy") ? policyTag.getAttribute("policy") : "none") {
+            case "long-distances":
+                policy = new Policy.LongDistances(topology);
+                break;
+            case "medium-distances":
+                policy = new Policy.MediumDistances(topology);
+                break;
+            case "short-distances":
+                policy = new Policy.ShortDistances(topology);
+                break;
+            case "none":
+                policy = new Policy.Uniform(topology);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown policy: " + policyTag.getAttribute("policy"));
+        }
+
+        double[] range = range(policyTag);
+        switch (policyTag.getAttribute("distribution")) {
+            case "constant":
+                return policy.constant(range[0], range[1]);
+            case "uniform":
+                return policy.uniform(range[0], range[1], random);
+            default:
+                throw new IllegalArgumentException("Unknown distribution: " + policyTag.getAttribute("distribution"));
+        }
+    }
+
+    // The {min, max} of a tag with either a value or a min and a max
+    private static double[] range(Element tag) {
+        if (tag.hasAttribute("value")) {
+            double value = Double.parseDouble(tag.getAttribute("value"));
+            return new double[] {value, value};
+        }
+        return new double[] {Double.parseDouble(tag.getAttribute("min")), Double.parseDouble(tag.getAttribute("max"))};
+    }
+
+    private static Element child(Element parent, String tagName) {
+        NodeList children = parent.getElementsByTagName(tagName);
+        if (children.getLength() == 0) {
+            throw new IllegalArgumentException("Missing tag: " + tagName);
+        }
+        return (Element) children.item(0);
+    }
+
+    // Getters and Setters.
+
+    public String getName() {
+        return name;
+    }
+
+    public Topology getTopology() {
+        return topology;
+    }
+
+    public List<VarVehicle> getVehicles() {
+        return vehicles;
+    }
+
+    public int getNumTasks() {
+        return numTasks;
+    }
+
+    public long getRngSeed() {
+        return rngSeed;
+    }
+}
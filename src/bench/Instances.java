@@ -0,0 +1,68 @@
+package bench;
+
+import java.awt.Color;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import logist.config.Parsers;
+import logist.task.Task;
+import logist.task.TaskSet;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+import model.VarVehicle;
+
+/**
+ * Builds problem instances directly from the bundled topologies, without going through the logist platform.
+ */
+public class Instances {
+
+    public static final String[] TOPOLOGIES = {"england", "france", "switzerland", "the_netherlands"};
+
+    /**
+     * Load one of the topologies of config/topology by name (e.g. "england")
+     */
+    public static Topology loadTopology(String name) {
+        try {
+            return Parsers.parseTopology("config" + File.separator + "topology" + File.separator + name + ".xml");
+        }
+        catch (Exception exc) {
+            throw new IllegalArgumentException("There was a problem loading the topology " + name, exc);
+        }
+    }
+
+    /**
+     * Create numTasks tasks between random (distinct) cities. Ids go from 0 to numTasks - 1.
+     */
+    public static TaskSet randomTasks(Topology topology, int numTasks, int weight, long seed) {
+        Random random = new Random(seed);
+        Task[] tasks = new Task[numTasks];
+
+        for (int id = 0; id < numTasks; id++) {
+            City pickupCity = topology.randomCity(random);
+            City deliveryCity;
+            do {
+                deliveryCity = topology.randomCity(random);
+            } while (deliveryCity == pickupCity);
+
+            tasks[id] = new Task(id, pickupCity, deliveryCity, (long) pickupCity.distanceTo(deliveryCity), weight);
+        }
+
+        return TaskSet.create(tasks);
+    }
+
+    /**
+     * Create numVehicles identical vehicles starting from random cities.
+     */
+    public static List<VarVehicle> randomVehicles(Topology topology, int numVehicles, int capacity, int costPerKm, long seed) {
+        Random random = new Random(seed);
+        List<VarVehicle> vehicles = new ArrayList<>();
+
+        for (int index = 0; index < numVehicles; index++) {
+            vehicles.add(new VarVehicle(index, capacity, costPerKm, topology.randomCity(random), Color.BLACK));
+        }
+
+        return vehicles;
+    }
+}
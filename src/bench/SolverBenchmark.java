@@ -0,0 +1,184 @@
+package bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.DoubleSupplier;
+
+import logist.task.TaskSet;
+import logist.topology.Topology;
+import model.ArraySolution;
+import model.Solution;
+import model.VarTask;
+import model.VarVehicle;
+import sls.StochasticLocalSearch;
+import utils.Pair;
+import utils.TopologyCache;
+
+/**
+ * Micro benchmarks of the solver hot paths on the bundled topologies.
+ *
+ * Each benchmark is warmed up and then run for a fixed time. It reports the throughput (ops/s) and,
+ * like the GC profiler of JMH, the bytes allocated per operation and the allocation rate of the
+ * benchmark thread (from com.sun.management.ThreadMXBean).
+ *
+ * Usage: bench.SolverBenchmark [topologies] [taskCounts] [benchmarks], each a comma separated list, e.g.
+ *   java -cp "lib/*:bin" bench.SolverBenchmark england,france 30,100 cost,copy,apply
+ */
+public class SolverBenchmark {
+
+    private static final String[] BENCHMARKS = {
+        "cost", "cachedCost", "copy", "swap", "removeAdd", "chooseNeighbors", "apply", "applyInPlace", "arrayCost", "arrayCopy"
+    };
+    private static final int[] TASK_COUNTS = {30, 100, 300, 1000};
+
+    private static final long WARMUP_NS = 1_000_000_000L;
+    private static final long MEASURE_NS = 2_000_000_000L;
+    private static final long SEED = 12345;
+    private static final int NUM_VEHICLES = 4;
+    private static final int CAPACITY = 30;
+    private static final int COST_PER_KM = 5;
+    private static final int WEIGHT = 3;
+    private static final int APPLY_ITERATIONS = 200;  // The iterations of a full apply run
+
+    private static volatile double sink;  // Consumes the results so the JIT cannot drop the benchmarked code
+
+    public static void main(String[] args) {
+        String[] topologies = args.length > 0 ? args[0].split(",") : Instances.TOPOLOGIES;
+        int[] taskCounts = args.length > 1 ? Arrays.stream(args[1].split(",")).mapToInt(Integer::parseInt).toArray() : TASK_COUNTS;
+        List<String> benchmarks = Arrays.asList(args.length > 2 ? args[2].split(",") : BENCHMARKS);
+
+        System.out.println(String.format("%-16s %-16s %6s %14s %14s %10s", "benchmark", "topology", "tasks", "ops/s", "B/op", "MB/s"));
+        for (String topologyName: topologies) {
+            Topology topology = Instances.loadTopology(topologyName);
+            TopologyCache topologyCache = new TopologyCache(topology);
+
+            for (int numTasks: taskCounts) {
+                TaskSet tasks = Instances.randomTasks(topology, numTasks, WEIGHT, SEED);
+                List<VarVehicle> vehicles = Instances.randomVehicles(topology, NUM_VEHICLES, CAPACITY, COST_PER_KM, SEED);
+                StochasticLocalSearch sls = new StochasticLocalSearch(0.45, APPLY_ITERATIONS, Long.MAX_VALUE / 2, topologyCache);
+                Solution solution = sls.createShortestInitialSolution(vehicles, tasks);
+                ArraySolution arraySolution = new ArraySolution(solution, vehicles, tasks);
+
+                for (String benchmark: benchmarks) {
+                    run(benchmark, topologyName, numTasks, operation(benchmark, sls, solution, arraySolution, vehicles, tasks));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The operation measured by a benchmark. Operations that modify a solution work on their own copy
+     * and leave it in the same state (e.g. swap twice) so that every run does the same work.
+     */
+    private static DoubleSupplier operation(String benchmark, StochasticLocalSearch sls, Solution solution,
+            ArraySolution arraySolution, List<VarVehicle> vehicles, TaskSet tasks) {
+        VarVehicle busiest = vehicles.get(0);
+        for (VarVehicle v: vehicles) {
+            if (solution.getTasksSize(v) > solution.getTasksSize(busiest)) {
+                busiest = v;
+            }
+        }
+        VarVehicle vehicle = busiest;
+        Solution working = new Solution(solution);
+
+        switch (benchmark) {
+            case "cost":
+                return () -> solution.recomputeCost();  // cost() would only read the cached total
+            case "cachedCost":
+                return () -> solution.cost();
+            case "copy":
+                return () -> new Solution(solution).getTasksSize(vehicle);
+            case "swap": {
+                int[] swap = findSwap(solution, vehicle);
+                return () -> {
+                    working.swapVarTasksFor(vehicle, swap[0], swap[1]);
+                    working.swapVarTasksFor(vehicle, swap[0], swap[1]);
+                    return working.getTasksSize(vehicle);
+                };
+            }
+            case "removeAdd":
+                return () -> {
+                    Pair<VarTask, VarTask> pair = working.getTaskAndSupplementaryAt(vehicle, 0);
+                    working.removeTaskAndSupplementaryAt(vehicle, pair, 0);
+                    working.addTaskAndSupplementaryAt(vehicle, pair, 0);
+                    return working.getTasksSize(vehicle);
+                };
+            case "chooseNeighbors": {
+                SplittableRandom randGen = new SplittableRandom(SEED);
+                return () -> sls.chooseNeighbors(solution, vehicles, randGen).size();
+            }
+            case "apply":
+                return () -> silentApply(sls, vehicles, tasks);
+            case "applyInPlace": {
+                StochasticLocalSearch inPlace = new StochasticLocalSearch(0.45, APPLY_ITERATIONS, Long.MAX_VALUE / 2, solution.getTopologyCache());
+                inPlace.setAllocationFree(true);
+                return () -> silentApply(inPlace, vehicles, tasks);
+            }
+            case "arrayCost":
+                return () -> arraySolution.cost();
+            case "arrayCopy":
+                return () -> new ArraySolution(arraySolution).getTasksSize(vehicle);
+            default:
+                throw new IllegalArgumentException("Unknown benchmark: " + benchmark);
+        }
+    }
+
+    // A full apply run, with the progress messages of the search silenced
+    private static double silentApply(StochasticLocalSearch sls, List<VarVehicle> vehicles, TaskSet tasks) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {}
+        }));
+        try {
+            return sls.apply(vehicles, tasks).size();
+        }
+        finally {
+            System.setOut(out);
+        }
+    }
+
+    // Find two indices of the route of v that can be swapped
+    private static int[] findSwap(Solution solution, VarVehicle v) {
+        for (int outerIdx = 0; outerIdx < solution.getTasksSize(v) - 1; outerIdx++) {
+            for (int innerIdx = outerIdx + 1; innerIdx < solution.getTasksSize(v); innerIdx++) {
+                if (solution.checkPickUpDeliverOrder(v, outerIdx, innerIdx)) {
+                    return new int[] {outerIdx, innerIdx};
+                }
+            }
+        }
+        throw new AssertionError("No swap possible for " + v);
+    }
+
+    // Warm up and measure an operation, then print its throughput and allocation
+    private static void run(String benchmark, String topology, int numTasks, DoubleSupplier operation) {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        loop(operation, WARMUP_NS);
+
+        long allocatedBefore = bean.getThreadAllocatedBytes(threadId);
+        long startTime = System.nanoTime();
+        long ops = loop(operation, MEASURE_NS);
+        double seconds = (System.nanoTime() - startTime) / 1_000_000_000.0;
+        long allocated = bean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.println(String.format("%-16s %-16s %6d %14.1f %14.1f %10.1f",
+                benchmark, topology, numTasks, ops / seconds, (double) allocated / ops, allocated / seconds / (1024 * 1024)));
+    }
+
+    // Run the operation for (at least) the given time and return the number of operations
+    private static long loop(DoubleSupplier operation, long durationNs) {
+        long startTime = System.nanoTime();
+        long ops = 0;
+        do {
+            sink += operation.getAsDouble();
+            ops++;
+        } while (System.nanoTime() - startTime < durationNs);
+        return ops;
+    }
+}
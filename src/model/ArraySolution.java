@@ -0,0 +1,518 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import logist.plan.Plan;
+import logist.task.Task;
+import logist.task.TaskSet;
+import logist.topology.Topology.City;
+import model.VarTask.Type;
+import utils.TopologyCache;
+
+/**
+ * Array backed alternative to {@link Solution}.
+ *
+ * Vehicles are addressed by their dense {@link VarVehicle#index()} and the route of each vehicle
+ * is an int[] of stops. A stop encodes a task id and a pickUp/delivery bit: (taskId << 1) | DELIVERY.
+ * The index of the supplementary stop of every stop sits in a parallel int[] (partners),
+ * so copying a solution only clones primitive arrays and creates no object per stop.
+ */
+public class ArraySolution {
+
+    public static final int PICKUP = 0;
+    public static final int DELIVERY = 1;
+
+    private static final int MIN_ROUTE_LENGTH = 8;
+
+    // Shared between all the copies of a solution (never modified)
+    private final City[] startCities;   // The start city of each vehicle
+    private final int[] capacities;     // The capacity of each vehicle
+    private final int[] costsPerKm;     // The cost per km of each vehicle
+    private final Task[] tasks;         // The tasks by id
+    private final City[] stopCities;    // The city of each stop code
+    private final int[] startCityIds;   // The id of the start city of each vehicle
+    private final int[] stopCityIds;    // The id of the city of each stop code
+    private final TopologyCache topologyCache;  // The distances between cities by id
+
+    // For each vehicle the stops in the order they should get executed, the index of
+    // the supplementary stop of each stop and the number of stops in the route.
+    private final int[][] routes;
+    private final int[][] partners;
+    private final int[] sizes;
+
+    public ArraySolution(List<VarVehicle> vehicles, TaskSet taskSet, TopologyCache topologyCache) {
+        this.topologyCache = topologyCache;
+        this.startCities = new City[vehicles.size()];
+        this.startCityIds = new int[vehicles.size()];
+        this.capacities = new int[vehicles.size()];
+        this.costsPerKm = new int[vehicles.size()];
+        for (VarVehicle vehicle: vehicles) {
+            if (vehicles.get(vehicle.index()) != vehicle)
+                throw new AssertionError("Vehicle index does not match its position: " + vehicle);
+
+            this.startCities[vehicle.index()] = vehicle.startCity();
+            this.startCityIds[vehicle.index()] = vehicle.startCity().id;
+            this.capacities[vehicle.index()] = vehicle.capacity();
+            this.costsPerKm[vehicle.index()] = vehicle.costPerKm();
+        }
+
+        // Index the tasks and the cities of their stops by task id
+        int maxId = -1;
+        for (Task t: taskSet) {
+            maxId = Math.max(maxId, t.id);
+        }
+        this.tasks = new Task[maxId + 1];
+        this.stopCities = new City[2 * (maxId + 1)];
+        this.stopCityIds = new int[2 * (maxId + 1)];
+        for (Task t: taskSet) {
+            this.tasks[t.id] = t;
+            this.stopCities[toStop(t.id, PICKUP)] = t.pickupCity;
+            this.stopCities[toStop(t.id, DELIVERY)] = t.deliveryCity;
+            this.stopCityIds[toStop(t.id, PICKUP)] = t.pickupCity.id;
+            this.stopCityIds[toStop(t.id, DELIVERY)] = t.deliveryCity.id;
+        }
+
+        this.routes = new int[vehicles.size()][MIN_ROUTE_LENGTH];
+        this.partners = new int[vehicles.size()][MIN_ROUTE_LENGTH];
+        this.sizes = new int[vehicles.size()];
+    }
+
+    /** Copy constructor */
+    public ArraySolution(ArraySolution toCopy) {
+        this.startCities = toCopy.startCities;
+        this.capacities = toCopy.capacities;
+        this.costsPerKm = toCopy.costsPerKm;
+        this.tasks = toCopy.tasks;
+        this.stopCities = toCopy.stopCities;
+        this.startCityIds = toCopy.startCityIds;
+        this.stopCityIds = toCopy.stopCityIds;
+        this.topologyCache = toCopy.topologyCache;
+
+        this.routes = new int[toCopy.routes.length][];
+        this.partners = new int[toCopy.routes.length][];
+        this.sizes = toCopy.sizes.clone();
+        for (int vIdx = 0; vIdx < routes.length; vIdx++) {
+            // Leave room for one more pickUp/delivery pair so that a relocation does not grow the arrays
+            int length = Math.max(MIN_ROUTE_LENGTH, sizes[vIdx] + 2);
+            this.routes[vIdx] = Arrays.copyOf(toCopy.routes[vIdx], length);
+            this.partners[vIdx] = Arrays.copyOf(toCopy.partners[vIdx], length);
+        }
+    }
+
+    /** Conversion from a {@link Solution} over the same vehicles and tasks */
+    public ArraySolution(Solution solution, List<VarVehicle> vehicles, TaskSet taskSet) {
+        this(vehicles, taskSet, solution.getTopologyCache());
+        for (VarVehicle v: vehicles) {
+            for (int idx = 0; idx < solution.getTasksSize(v); idx++) {
+                addVarTask(v, solution.getTask(v, idx));
+            }
+        }
+    }
+
+    /**
+     * Copy the routes into target, a solution over the same vehicles and tasks (e.g. a copy of this one).
+     * The arrays of target are reused and only grow if a route does not fit, so once they are big enough
+     * keeping the best solution of a search allocates nothing.
+     */
+    public void copyInto(ArraySolution target) {
+        if (target.tasks != this.tasks || target.routes.length != this.routes.length)
+            throw new AssertionError("The solutions are not over the same vehicles and tasks");
+
+        for (int vIdx = 0; vIdx < this.routes.length; vIdx++) {
+            target.ensureLength(vIdx, this.sizes[vIdx]);
+            System.arraycopy(this.routes[vIdx], 0, target.routes[vIdx], 0, this.sizes[vIdx]);
+            System.arraycopy(this.partners[vIdx], 0, target.partners[vIdx], 0, this.sizes[vIdx]);
+            target.sizes[vIdx] = this.sizes[vIdx];
+        }
+    }
+
+    /**
+     * Conversion to a {@link Solution} over the given vehicles (the ones this solution was created from)
+     */
+    public Solution toSolution(List<VarVehicle> vehicles) {
+        Solution solution = new Solution(vehicles, this.topologyCache);
+        for (VarVehicle v: vehicles) {
+            int[] route = this.routes[v.index()];
+            for (int idx = 0; idx < this.sizes[v.index()]; idx++) {
+                solution.addVarTask(v, new VarTask(getTask(route[idx]), isDelivery(route[idx]) ? Type.Delivery : Type.PickUp));
+            }
+        }
+        return solution;
+    }
+
+    /** Encode a task id and a pickUp/delivery bit as a stop */
+    public static int toStop(int taskId, int type) {
+        return (taskId << 1) | type;
+    }
+
+    public static int taskId(int stop) {
+        return stop >> 1;
+    }
+
+    public static boolean isDelivery(int stop) {
+        return (stop & DELIVERY) != 0;
+    }
+
+    public int getTasksSize(VarVehicle v) {
+        return this.sizes[v.index()];
+    }
+
+    /**
+     * Return the stop at index idx of vehicle v
+     */
+    public int getStop(VarVehicle v, int idx) {
+        return this.routes[v.index()][idx];
+    }
+
+    /**
+     * Return the task of a stop
+     */
+    public Task getTask(int stop) {
+        return this.tasks[taskId(stop)];
+    }
+
+    /**
+     * Check the if the stream of tasks in vehicle v satisfies its capacity constraint.
+     */
+    public boolean checkCapacityConstraint(VarVehicle v) {
+        int vIdx = v.index();
+        int[] route = this.routes[vIdx];
+        int currentWeight = 0;
+
+        for (int idx = 0; idx < this.sizes[vIdx]; idx++) {
+            currentWeight += load(route[idx]);
+
+            if (currentWeight > this.capacities[vIdx]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Write the load of v after each of its stops in loads (which must hold at least {@link #getTasksSize} values).
+     */
+    public void fillLoads(VarVehicle v, int[] loads) {
+        int vIdx = v.index();
+        int[] route = this.routes[vIdx];
+        int currentWeight = 0;
+
+        for (int idx = 0; idx < this.sizes[vIdx]; idx++) {
+            currentWeight += load(route[idx]);
+            loads[idx] = currentWeight;
+        }
+    }
+
+    /**
+     * Adds the subTask to the end of the ordered list of the vehicles tasks
+     *
+     * @param v The vehicle
+     * @param t The task
+     */
+    public void addVarTask(VarVehicle v, VarTask t) {
+        int vIdx = v.index();
+        int size = this.sizes[vIdx];
+        ensureLength(vIdx, size + 1);
+        int[] route = this.routes[vIdx];
+        int[] partner = this.partners[vIdx];
+
+        // If task is pickUp simply append it in the route
+        if (t.type == Type.PickUp) {
+            route[size] = toStop(t.task.id, PICKUP);
+            partner[size] = -1;  // -1 because we dont have the supplementary stop yet
+        }
+        // If delivery then search for the supplementary pick up and bind them
+        else {
+            int pickUp = toStop(t.task.id, PICKUP);
+            int pickUpIdx = -1;
+            for (int idx = 0; idx < size; idx++) {
+                if (route[idx] == pickUp) {
+                    pickUpIdx = idx;
+                    break;
+                }
+            }
+
+            // DEBUG:
+            if (pickUpIdx < 0)
+                throw new AssertionError("Delivery Task not found for: " + t.task);
+
+            route[size] = toStop(t.task.id, DELIVERY);
+            partner[size] = pickUpIdx;
+            partner[pickUpIdx] = size;
+        }
+
+        this.sizes[vIdx]++;
+    }
+
+    /**
+     * PickUp - Deliver order constraint, same as {@link Solution#checkPickUpDeliverOrder}.
+     */
+    public boolean checkPickUpDeliverOrder(VarVehicle v, int t1Idx, int t2Idx) {
+        int supT1Idx = this.partners[v.index()][t1Idx];
+        int supT2Idx = this.partners[v.index()][t2Idx];
+
+        return !((supT1Idx <= t2Idx && supT1Idx > t1Idx) || (supT2Idx >= t1Idx && supT2Idx < t2Idx));
+    }
+
+    /**
+     * Swaps the two indexes in the route of vehicle v.
+     */
+    public void swapVarTasksFor(VarVehicle v, int t1Idx, int t2Idx) {
+        int[] route = this.routes[v.index()];
+        int[] partner = this.partners[v.index()];
+
+        // Point the supplementary stops to the new indices
+        partner[partner[t1Idx]] = t2Idx;
+        partner[partner[t2Idx]] = t1Idx;
+
+        int tmp = route[t1Idx];
+        route[t1Idx] = route[t2Idx];
+        route[t2Idx] = tmp;
+
+        tmp = partner[t1Idx];
+        partner[t1Idx] = partner[t2Idx];
+        partner[t2Idx] = tmp;
+    }
+
+    /**
+     * Removes the stop at index and its supplementary stop from the route of v.
+     *
+     * @return The id of the removed task
+     */
+    public int removeTaskAndSupplementaryAt(VarVehicle v, int index) {
+        int vIdx = v.index();
+        int[] route = this.routes[vIdx];
+        int[] partner = this.partners[vIdx];
+        int pIdx = Math.min(index, partner[index]);
+        int dIdx = Math.max(index, partner[index]);
+        int taskId = taskId(route[index]);
+
+        // Compact the route skipping the two removed stops and shift the supplementary indices
+        int write = 0;
+        for (int read = 0; read < this.sizes[vIdx]; read++) {
+            if (read == pIdx || read == dIdx) {
+                continue;
+            }
+            int sup = partner[read];
+            route[write] = route[read];
+            partner[write] = sup - (sup > pIdx ? 1 : 0) - (sup > dIdx ? 1 : 0);
+            write++;
+        }
+        this.sizes[vIdx] -= 2;
+
+        return taskId;
+    }
+
+    /**
+     * Inserts the pickUp and the delivery of a task back-to-back at index in the route of v.
+     */
+    public void addTaskAndSupplementaryAt(VarVehicle v, int taskId, int index) {
+        int vIdx = v.index();
+        int size = this.sizes[vIdx];
+        ensureLength(vIdx, size + 2);
+        int[] route = this.routes[vIdx];
+        int[] partner = this.partners[vIdx];
+
+        // Every supplementary index at or after index moves by 2
+        for (int idx = 0; idx < size; idx++) {
+            if (partner[idx] >= index) {
+                partner[idx] += 2;
+            }
+        }
+        System.arraycopy(route, index, route, index + 2, size - index);
+        System.arraycopy(partner, index, partner, index + 2, size - index);
+
+        route[index] = toStop(taskId, PICKUP);
+        partner[index] = index + 1;
+        route[index + 1] = toStop(taskId, DELIVERY);
+        partner[index + 1] = index;
+
+        this.sizes[vIdx] += 2;
+    }
+
+    /**
+     * Return the change in cost of {@link #swapVarTasksFor} on the same indices (t1Idx < t2Idx).
+     */
+    public double swapCostDelta(VarVehicle v, int t1Idx, int t2Idx) {
+        int vIdx = v.index();
+
+        double delta = legDeltaAfterSwap(vIdx, t1Idx, t1Idx, t2Idx);
+        if (t1Idx + 1 < t2Idx) {
+            delta += legDeltaAfterSwap(vIdx, t1Idx + 1, t1Idx, t2Idx);
+        }
+        delta += legDeltaAfterSwap(vIdx, t2Idx, t1Idx, t2Idx);
+        delta += legDeltaAfterSwap(vIdx, t2Idx + 1, t1Idx, t2Idx);
+
+        return delta * this.costsPerKm[vIdx];
+    }
+
+    /**
+     * Return the change in cost of {@link #removeTaskAndSupplementaryAt} on the same index.
+     */
+    public double removeCostDelta(VarVehicle v, int index) {
+        int vIdx = v.index();
+        int pIdx = Math.min(index, this.partners[vIdx][index]);
+        int dIdx = Math.max(index, this.partners[vIdx][index]);
+        int size = this.sizes[vIdx];
+
+        double delta;
+        if (dIdx == pIdx + 1) {
+            delta = - legCost(vIdx, pIdx) - legCost(vIdx, dIdx) - legCost(vIdx, dIdx + 1);
+            if (dIdx + 1 < size) {
+                delta += this.topologyCache.distance(cityAt(vIdx, pIdx - 1), cityAt(vIdx, dIdx + 1));
+            }
+        }
+        else {
+            delta = - legCost(vIdx, pIdx) - legCost(vIdx, pIdx + 1)
+                    + this.topologyCache.distance(cityAt(vIdx, pIdx - 1), cityAt(vIdx, pIdx + 1));
+            delta += - legCost(vIdx, dIdx) - legCost(vIdx, dIdx + 1);
+            if (dIdx + 1 < size) {
+                delta += this.topologyCache.distance(cityAt(vIdx, dIdx - 1), cityAt(vIdx, dIdx + 1));
+            }
+        }
+
+        return delta * this.costsPerKm[vIdx];
+    }
+
+    /**
+     * Return the change in cost of {@link #addTaskAndSupplementaryAt} on the same index.
+     */
+    public double addCostDelta(VarVehicle v, int taskId, int index) {
+        int vIdx = v.index();
+        int pickUpCity = this.stopCityIds[toStop(taskId, PICKUP)];
+        int deliveryCity = this.stopCityIds[toStop(taskId, DELIVERY)];
+
+        double delta = this.topologyCache.distance(cityAt(vIdx, index - 1), pickUpCity) + this.topologyCache.distance(pickUpCity, deliveryCity);
+        if (index < this.sizes[vIdx]) {
+            delta += this.topologyCache.distance(deliveryCity, cityAt(vIdx, index)) - legCost(vIdx, index);
+        }
+
+        return delta * this.costsPerKm[vIdx];
+    }
+
+    /**
+     * Return the total cost of the solution, computed the same way as {@link Solution#cost()}.
+     */
+    public double cost() {
+        double totalCost = 0D;
+        for (int vIdx = 0; vIdx < this.routes.length; vIdx++) {
+            int[] route = this.routes[vIdx];
+
+            // skip vehicles with no tasks
+            if (this.sizes[vIdx] == 0) {
+                continue;
+            }
+
+            double vehicleCost = this.topologyCache.distance(this.startCityIds[vIdx], this.stopCityIds[route[0]]);
+            for (int idx = 0; idx < this.sizes[vIdx] - 1; idx++) {
+                vehicleCost += this.topologyCache.distance(this.stopCityIds[route[idx]], this.stopCityIds[route[idx + 1]]);
+            }
+            totalCost += vehicleCost * this.costsPerKm[vIdx];
+        }
+        return totalCost;
+    }
+
+    /**
+     * Create a plan for each vehicle and return a list of all the plans
+     * with respect to the order of the list Vehicle passed as parameter
+     */
+    public List<Plan> toPlans(List<VarVehicle> vehicles) {
+        List<Plan> plans = new ArrayList<>();
+        for (VarVehicle vehicle: vehicles) {
+            int vIdx = vehicle.index();
+            int[] route = this.routes[vIdx];
+
+            if (this.sizes[vIdx] == 0) {
+                plans.add(Plan.EMPTY);
+                continue;
+            }
+
+            // Start from the vehicle's start city and move to every stop
+            Plan plan = new Plan(vehicle.startCity());
+            City current = vehicle.startCity();
+            for (int idx = 0; idx < this.sizes[vIdx]; idx++) {
+                City next = this.stopCities[route[idx]];
+                this.topologyCache.appendMoves(plan, current, next);
+
+                if (isDelivery(route[idx])) {
+                    plan.appendDelivery(getTask(route[idx]));
+                }
+                else {
+                    plan.appendPickup(getTask(route[idx]));
+                }
+                current = next;
+            }
+
+            plans.add(plan);
+        }
+
+        return plans;
+    }
+
+    // The change of load caused by a stop (positive for pickUp, negative for delivery)
+    private int load(int stop) {
+        int weight = this.tasks[taskId(stop)].weight;
+        return isDelivery(stop) ? -weight : weight;
+    }
+
+    // Grow the arrays of a vehicle so they can hold at least length stops
+    private void ensureLength(int vIdx, int length) {
+        if (this.routes[vIdx].length < length) {
+            int newLength = Math.max(length, 2 * this.routes[vIdx].length);
+            this.routes[vIdx] = Arrays.copyOf(this.routes[vIdx], newLength);
+            this.partners[vIdx] = Arrays.copyOf(this.partners[vIdx], newLength);
+        }
+    }
+
+    // Returns the id of the city of the stop at idx, or of the start city of the vehicle for idx == -1.
+    private int cityAt(int vIdx, int idx) {
+        return idx < 0 ? this.startCityIds[vIdx] : this.stopCityIds[this.routes[vIdx][idx]];
+    }
+
+    // Returns the distance of the leg that ends at idx (0 if idx is past the end of the route).
+    private double legCost(int vIdx, int idx) {
+        if (idx >= this.sizes[vIdx]) {
+            return 0D;
+        }
+        return this.topologyCache.distance(cityAt(vIdx, idx - 1), cityAt(vIdx, idx));
+    }
+
+    // Returns the difference in distance of the leg that ends at idx if t1Idx and t2Idx were swapped.
+    private double legDeltaAfterSwap(int vIdx, int idx, int t1Idx, int t2Idx) {
+        if (idx >= this.sizes[vIdx]) {
+            return 0D;
+        }
+        int from = (idx - 1 == t1Idx) ? t2Idx : (idx - 1 == t2Idx) ? t1Idx : idx - 1;
+        int to   = (idx == t1Idx) ? t2Idx : (idx == t2Idx) ? t1Idx : idx;
+
+        return this.topologyCache.distance(cityAt(vIdx, from), cityAt(vIdx, to)) - legCost(vIdx, idx);
+    }
+
+    @Override
+    public String toString() {
+        String str = "ArraySolution:\n";
+        for (int vIdx = 0; vIdx < this.routes.length; vIdx++) {
+            str += vIdx + ": " + Arrays.toString(Arrays.copyOf(this.routes[vIdx], this.sizes[vIdx])) + "\n";
+        }
+        return str;
+    }
+
+
+    // ! Debug
+    /**
+     * Checks all the supplementary indices if they are correct
+     */
+    public void checkSupps() {
+        for (int vIdx = 0; vIdx < this.routes.length; vIdx++) {
+            for (int idx = 0; idx < this.sizes[vIdx]; idx++) {
+                int supIdx = this.partners[vIdx][idx];
+
+                if (taskId(this.routes[vIdx][idx]) != taskId(this.routes[vIdx][supIdx]) || this.partners[vIdx][supIdx] != idx)
+                    throw new AssertionError("Miss indexed tasks");
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package model;
+
+/**
+ * Where to insert a task (its pickUp and its delivery) in the route of a vehicle, and what it costs.
+ *
+ * The indices are the ones the two tasks get in the route after the insertion, so pickUpIdx < deliveryIdx.
+ */
+public class Insertion {
+
+    private final VarVehicle vehicle;
+    private final int pickUpIdx;
+    private final int deliveryIdx;
+    private final double costDelta;
+
+    public Insertion(VarVehicle vehicle, int pickUpIdx, int deliveryIdx, double costDelta) {
+        this.vehicle = vehicle;
+        this.pickUpIdx = pickUpIdx;
+        this.deliveryIdx = deliveryIdx;
+        this.costDelta = costDelta;
+    }
+
+    // Getters and Setters.
+    public VarVehicle vehicle() {
+        return vehicle;
+    }
+
+    public int pickUpIdx() {
+        return pickUpIdx;
+    }
+
+    public int deliveryIdx() {
+        return deliveryIdx;
+    }
+
+    public double costDelta() {
+        return costDelta;
+    }
+
+    @Override
+    public String toString() {
+        return "Insertion [vehicle=" + vehicle + ", pickUpIdx=" + pickUpIdx + ", deliveryIdx=" + deliveryIdx
+                + ", costDelta=" + costDelta + "]";
+    }
+}
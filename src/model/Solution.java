@@ -3,39 +3,121 @@ package model;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import logist.plan.Plan;
+import logist.task.Task;
 import logist.task.TaskSet;
 import logist.topology.Topology.City;
 import model.VarTask.Type;
+import utils.LoadSegmentTree;
 import utils.Pair;
+import utils.TopologyCache;
+import utils.Zobrist;
 
 public class Solution {
 
     // For each vehicle store a list of tasks with the order they should get executed.
     // Each item of the list stores the task along with an index to its supplementary task
     // (if pickup the index points to the delivery and if delivery the index points to pickup).
+    // Routes are copy-on-write: copies share the lists and a list is cloned only before it gets modified.
     private HashMap<VarVehicle, List<Pair<VarTask, Integer>>> nextTask = new HashMap<>();
+    private HashSet<VarVehicle> ownedRoutes = new HashSet<>();  // The routes that only this solution uses (safe to modify)
 
     HashMap<VarTask, VarVehicle> taskVehicles = new HashMap<>(); // Maps tasks to the vehicles that carry them.
 
-    public Solution(List<VarVehicle> vehicles) {
+    private final TopologyCache topologyCache; // The distances between cities (shared by all copies)
+
+    // The loads of each route, built on demand and dropped when the route changes.
+    // Trees are never modified after they are built, so copies share them.
+    private final ConcurrentHashMap<VarVehicle, LoadSegmentTree> loads = new ConcurrentHashMap<>();
+
+    private long hash = 0;  // The Zobrist hash of the routes (see fingerprint)
+
+    // The cost of each route and the total, computed on demand. A route that changes is dropped (dirty)
+    // and the total is invalidated (NaN), so cost() only sums again the routes that changed.
+    private final ConcurrentHashMap<VarVehicle, Double> routeCosts = new ConcurrentHashMap<>();
+    private volatile double totalCost = Double.NaN;
+
+    public Solution(List<VarVehicle> vehicles, TopologyCache topologyCache) {
+        this.topologyCache = topologyCache;
         for (VarVehicle vehicle: vehicles) {
             this.nextTask.put(vehicle, new ArrayList<>());
+            this.ownedRoutes.add(vehicle);
         }
     }
 
-    /** Copy constructor */
-    public Solution(Solution toCopy) {
-        for (Entry<VarVehicle, List<Pair<VarTask, Integer>>> entry: toCopy.nextTask.entrySet()) {
-            List<Pair<VarTask, Integer>> copyTasks = new ArrayList<>();
+    /**
+     * Retarget a solution to new vehicles and a new task set (warm start): the routes go to the vehicles with
+     * the same index, and keep the order of the tasks that are still in the task set (matched by id, cities and weight).
+     * Tasks that are gone, or whose vehicle is gone, are dropped. The routes are not checked against the
+     * new capacities and the new tasks are not added.
+     */
+    public Solution(Solution previous, List<VarVehicle> vehicles, TaskSet tasks) {
+        this(vehicles, previous.topologyCache);
+
+        HashMap<Integer, Task> tasksById = new HashMap<>();
+        for (Task task: tasks) {
+            tasksById.put(task.id, task);
+        }
+
+        for (Entry<VarVehicle, List<Pair<VarTask, Integer>>> entry: previous.nextTask.entrySet()) {
+            if (entry.getKey().index() >= vehicles.size()) {
+                continue;
+            }
+            VarVehicle vehicle = vehicles.get(entry.getKey().index());
             for (Pair<VarTask, Integer> pair: entry.getValue()) {
+                Task task = tasksById.get(pair.getLeft().task.id);
+                if (task != null && sameTask(task, pair.getLeft().task)) {
+                    addVarTask(vehicle, new VarTask(task, pair.getLeft().type));
+                }
+            }
+        }
+    }
+
+    // True if the two tasks have the same cities and weight (an id may be reused for another task)
+    private static boolean sameTask(Task task, Task other) {
+        return task.pickupCity.id == other.pickupCity.id && task.deliveryCity.id == other.deliveryCity.id
+                && task.weight == other.weight;
+    }
+
+    /**
+     * Copy constructor. The routes are shared with toCopy and neither of the two solutions
+     * owns them anymore, so the first one to modify a route clones it.
+     */
+    public Solution(Solution toCopy) {
+        this.topologyCache = toCopy.topologyCache;
+        synchronized (toCopy) {
+            this.nextTask.putAll(toCopy.nextTask);
+            toCopy.ownedRoutes.clear();
+        }
+        this.hash = toCopy.hash;
+        this.loads.putAll(toCopy.loads);
+        this.routeCosts.putAll(toCopy.routeCosts);
+        this.totalCost = toCopy.totalCost;
+    }
+
+    /**
+     * Return the route of v ready to be modified: clone it (and its pairs) if it is shared
+     * with another solution, and drop the caches derived from it.
+     */
+    private List<Pair<VarTask, Integer>> mutableRoute(VarVehicle v) {
+        if (!this.ownedRoutes.contains(v)) {
+            List<Pair<VarTask, Integer>> copyTasks = new ArrayList<>(this.nextTask.get(v).size() + 2);
+            for (Pair<VarTask, Integer> pair: this.nextTask.get(v)) {
                 copyTasks.add(new Pair<>(pair));
             }
-            this.nextTask.put(entry.getKey(), copyTasks);
+            this.nextTask.put(v, copyTasks);
+            this.ownedRoutes.add(v);
         }
+        this.loads.remove(v);
+        this.routeCosts.remove(v);
+        this.totalCost = Double.NaN;
+
+        return this.nextTask.get(v);
     }
 
     /**
@@ -49,6 +131,10 @@ public class Solution {
         }
     }
 
+    public TopologyCache getTopologyCache() {
+        return topologyCache;
+    }
+
     public Integer getTasksSize(VarVehicle v) {
         return this.nextTask.get(v).size();
     }
@@ -66,6 +152,31 @@ public class Solution {
     }
 
 
+    /**
+     * Return the number of tasks (pairs of pickUp and delivery) in all the routes
+     */
+    public int getTaskCount() {
+        int stops = 0;
+        for (List<Pair<VarTask, Integer>> tasks: this.nextTask.values()) {
+            stops += tasks.size();
+        }
+        return stops / 2;
+    }
+
+    /**
+     * Return the city of the task at taskIdx, or the start city of v for taskIdx == -1
+     */
+    public City getCityAt(VarVehicle v, int taskIdx) {
+        return cityAt(v, this.nextTask.get(v), taskIdx);
+    }
+
+    /**
+     * Return the index of the supplementary task (the delivery of a pickUp and vice versa) of the task at taskIdx
+     */
+    public int getSupplementaryIndex(VarVehicle v, int taskIdx) {
+        return this.nextTask.get(v).get(taskIdx).getRight();
+    }
+
     /**
      * Check the if the stream of tasks in vehicle v satisfies its capacity constraint.
      *
@@ -91,6 +202,40 @@ public class Solution {
         return true;
     }
 
+    /**
+     * Check if the capacity constraint of vehicle v still holds after swapping t1Idx and t2Idx (t1Idx < t2Idx),
+     * without swapping. Only the loads in [t1Idx, t2Idx) change, by the difference of the two task weights,
+     * so the check is a range-max on the loads of the route in O(log n).
+     */
+    public boolean checkSwapCapacity(VarVehicle v, int t1Idx, int t2Idx) {
+        List<Pair<VarTask, Integer>> tasks = this.nextTask.get(v);
+        int change = load(tasks.get(t2Idx).getLeft()) - load(tasks.get(t1Idx).getLeft());
+
+        return getLoads(v).rangeMax(t1Idx, t2Idx) + change <= v.capacity();
+    }
+
+    /**
+     * Return the loads of vehicle v after each of its tasks. The tree is built on the first call after
+     * the route changed and must not be modified by the caller.
+     */
+    public LoadSegmentTree getLoads(VarVehicle v) {
+        return this.loads.computeIfAbsent(v, vehicle -> {
+            List<Pair<VarTask, Integer>> tasks = this.nextTask.get(vehicle);
+            int[] prefixLoads = new int[tasks.size()];
+            int currentWeight = 0;
+            for (int idx = 0; idx < tasks.size(); idx++) {
+                currentWeight += load(tasks.get(idx).getLeft());
+                prefixLoads[idx] = currentWeight;
+            }
+            return new LoadSegmentTree(prefixLoads, tasks.size());
+        });
+    }
+
+    // The change of load caused by a task (positive for pickUp, negative for delivery)
+    private int load(VarTask task) {
+        return task.type == Type.PickUp ? task.weight() : -task.weight();
+    }
+
     /**
      * Adds the subTask to the end of the ordered list of the vehicles tasks
      *
@@ -98,7 +243,8 @@ public class Solution {
      * @param t The task
      */
     public void addVarTask(VarVehicle v, VarTask t) {
-        List<Pair<VarTask, Integer>> tasks = this.nextTask.get(v);
+        List<Pair<VarTask, Integer>> tasks = mutableRoute(v);
+        hash ^= key(t, v, tasks.size());
 
         // If task is pickUp simply append it in the list
         if (t.type == Type.PickUp) {
@@ -157,15 +303,18 @@ public class Solution {
      * Swaps the two indexes in the list of tasks for vehicle v.
      */
     public void swapVarTasksFor(VarVehicle v, int t1Idx, int t2Idx) {
+        List<Pair<VarTask, Integer>> tasks = mutableRoute(v);
+        hash = swapFingerprint(v, t1Idx, t2Idx);
+
         // before swapping remember to change the indexes of the supplementary tasks
-        int supt1Idx = this.nextTask.get(v).get(t1Idx).getRight();
-        int supt2Idx = this.nextTask.get(v).get(t2Idx).getRight();
+        int supt1Idx = tasks.get(t1Idx).getRight();
+        int supt2Idx = tasks.get(t2Idx).getRight();
 
         // Swap the indexes of the sup tasks to show to the new indices
-        this.nextTask.get(v).get(supt1Idx).setRight(t2Idx);
-        this.nextTask.get(v).get(supt2Idx).setRight(t1Idx);
+        tasks.get(supt1Idx).setRight(t2Idx);
+        tasks.get(supt2Idx).setRight(t1Idx);
 
-        Collections.swap(this.nextTask.get(v), t1Idx, t2Idx);
+        Collections.swap(tasks, t1Idx, t2Idx);
     }
 
     // Returns a pair containing a task and its supplementary task for a vehicle.
@@ -183,7 +332,8 @@ public class Solution {
     // Removes the given pair of task sfor the vehicle at the given index.
     public void removeTaskAndSupplementaryAt(VarVehicle v, Pair<VarTask, VarTask> pair, int index) {
         // Get the tasks of the vehicle
-        List<Pair<VarTask, Integer>> tasks = nextTask.get(v);
+        List<Pair<VarTask, Integer>> tasks = mutableRoute(v);
+        hash ^= hashFrom(v, tasks, index);  // The tasks from index on move, so their keys change
 
         // Get the index of the supplementary task
         int supIndex = tasks.get(index).getRight();
@@ -191,6 +341,7 @@ public class Solution {
         // Remove the task and its supplementary task
         tasks.remove(index);
         tasks.remove(supIndex-1); // -1 because we removed one element already
+        hash ^= hashFrom(v, tasks, index);
 
         // Update the supplementary indices of each task
         updateIndicesAfterRemove(tasks, index, supIndex-1);
@@ -198,12 +349,366 @@ public class Solution {
 
     // Inserts the given pair of tasks for the vehicle at the given index.
     public void addTaskAndSupplementaryAt(VarVehicle v, Pair<VarTask, VarTask> pair, int index) {
-        // Add the two tasks back-to-back in the list of the vehicle
-        nextTask.get(v).add(index, new Pair<VarTask, Integer>(pair.getLeft(), index + 1));
-        nextTask.get(v).add(index + 1, new Pair<VarTask, Integer>(pair.getRight(), index));
+        addTaskAndSupplementaryAt(v, pair, index, index + 1);
+    }
+
+    /**
+     * Inserts the pickUp (left) and the delivery (right) of the pair so that they end up at pickUpIdx
+     * and deliveryIdx of the route (pickUpIdx < deliveryIdx).
+     */
+    public void addTaskAndSupplementaryAt(VarVehicle v, Pair<VarTask, VarTask> pair, int pickUpIdx, int deliveryIdx) {
+        List<Pair<VarTask, Integer>> tasks = mutableRoute(v);
+        hash ^= hashFrom(v, tasks, pickUpIdx);  // The tasks from pickUpIdx on move, so their keys change
+
+        tasks.add(pickUpIdx, new Pair<VarTask, Integer>(pair.getLeft(), deliveryIdx));
+        tasks.add(deliveryIdx, new Pair<VarTask, Integer>(pair.getRight(), pickUpIdx));
+        hash ^= hashFrom(v, tasks, pickUpIdx);
+
+        // Update the supplementary indices of the other tasks
+        updateIndicesAfterAdd(tasks, pickUpIdx, deliveryIdx);
+    }
+
+    /**
+     * Find the cheapest feasible positions of the pair (pickUp, delivery) in the route of v, without inserting it.
+     *
+     * For each pickUp position the delivery positions are scanned forward while the loads in between
+     * (which grow by the weight of the task) fit. The scan stops at the first overload, since it only gets
+     * worse further on, and pickUp positions whose detour alone is not better than the best are skipped
+     * (the distances are shortest paths, so the delivery can only add to the detour).
+     *
+     * @return The best insertion, or null if the task does not fit anywhere in the route
+     */
+    public Insertion findBestInsertion(VarVehicle v, Pair<VarTask, VarTask> pair) {
+        return findBestInsertion(v, pair, 0);
+    }
+
+    /**
+     * Same as {@link #findBestInsertion(VarVehicle, Pair)}, but the pickUp (the delivery) only goes right after a
+     * task that is one of the nearest cities of the pickUp (the delivery) city, with nearest <= 0 for no restriction.
+     * The start and the end of the route are always tried, so a task that fits the route is never left out.
+     */
+    public Insertion findBestInsertion(VarVehicle v, Pair<VarTask, VarTask> pair, int nearest) {
+        List<Pair<VarTask, Integer>> tasks = this.nextTask.get(v);
+        int size = tasks.size();
+        int weight = pair.getLeft().weight();
+        City pickUpCity = pair.getLeft().city();
+        City deliveryCity = pair.getRight().city();
+
+        // The load after each task of the route
+        LoadSegmentTree loadTree = getLoads(v);
+        int[] routeLoads = new int[size];
+        for (int idx = 0; idx < size; idx++) {
+            routeLoads[idx] = loadTree.get(idx);
+        }
+
+        double bestDelta = Double.MAX_VALUE;
+        int bestPickUp = -1;
+        int bestDelivery = -1;
+
+        // The pickUp goes before the task at p (or at the end for p == size)
+        for (int p = 0; p <= size; p++) {
+            int loadBefore = p == 0 ? 0 : routeLoads[p - 1];
+            if (loadBefore + weight > v.capacity()) {
+                continue;
+            }
+
+            City previous = cityAt(v, tasks, p - 1);
+            if (nearest > 0 && p > 0 && p < size && !this.topologyCache.isNear(pickUpCity, previous, nearest)) {
+                continue;
+            }
+            double pickUpDelta = this.topologyCache.distance(previous, pickUpCity);
+            if (p < size) {
+                pickUpDelta += this.topologyCache.distance(pickUpCity, cityAt(v, tasks, p)) - legCost(v, tasks, p);
+            }
+            if (pickUpDelta >= bestDelta) {
+                continue;
+            }
+
+            // Back-to-back: previous -> pickUp -> delivery (-> the task at p)
+            double delta = this.topologyCache.distance(previous, pickUpCity)
+                    + this.topologyCache.distance(pickUpCity, deliveryCity);
+            if (p < size) {
+                delta += this.topologyCache.distance(deliveryCity, cityAt(v, tasks, p)) - legCost(v, tasks, p);
+            }
+            if (delta < bestDelta) {
+                bestDelta = delta;
+                bestPickUp = p;
+                bestDelivery = p + 1;
+            }
+
+            // The delivery goes before the task at d (or at the end), the task is carried over [p, d)
+            for (int d = p + 1; d <= size; d++) {
+                if (routeLoads[d - 1] + weight > v.capacity()) {
+                    break;
+                }
+                if (nearest > 0 && d < size && !this.topologyCache.isNear(deliveryCity, cityAt(v, tasks, d - 1), nearest)) {
+                    continue;
+                }
+                delta = pickUpDelta + this.topologyCache.distance(cityAt(v, tasks, d - 1), deliveryCity);
+                if (d < size) {
+                    delta += this.topologyCache.distance(deliveryCity, cityAt(v, tasks, d)) - legCost(v, tasks, d);
+                }
+                if (delta < bestDelta) {
+                    bestDelta = delta;
+                    bestPickUp = p;
+                    bestDelivery = d + 1;  // + 1 for the pickUp inserted before it
+                }
+            }
+        }
+
+        if (bestPickUp < 0) {
+            return null;
+        }
+        return new Insertion(v, bestPickUp, bestDelivery, bestDelta * v.costPerKm());
+    }
+
+    /**
+     * Return the change in cost caused by {@link #swapVarTasksFor} on the same indices,
+     * without applying the swap. Only the legs around the two indices are visited.
+     *
+     * @NOTE: t1Idx must be smaller than t2Idx.
+     */
+    public double swapCostDelta(VarVehicle v, int t1Idx, int t2Idx) {
+        List<Pair<VarTask, Integer>> tasks = this.nextTask.get(v);
+
+        // The legs that end at t1Idx, t1Idx + 1, t2Idx and t2Idx + 1 are the only ones that change
+        double delta = legDeltaAfterSwap(v, tasks, t1Idx, t1Idx, t2Idx);
+        if (t1Idx + 1 < t2Idx) {
+            delta += legDeltaAfterSwap(v, tasks, t1Idx + 1, t1Idx, t2Idx);
+        }
+        delta += legDeltaAfterSwap(v, tasks, t2Idx, t1Idx, t2Idx);
+        delta += legDeltaAfterSwap(v, tasks, t2Idx + 1, t1Idx, t2Idx);
+
+        return delta * v.costPerKm();
+    }
+
+    /**
+     * Return the change in cost caused by {@link #removeTaskAndSupplementaryAt} on the same index,
+     * without removing anything.
+     */
+    public double removeCostDelta(VarVehicle v, int index) {
+        List<Pair<VarTask, Integer>> tasks = this.nextTask.get(v);
+        int pIdx = Math.min(index, tasks.get(index).getRight());
+        int dIdx = Math.max(index, tasks.get(index).getRight());
+
+        double delta;
+        if (dIdx == pIdx + 1) {
+            // Back-to-back tasks: the route jumps from pIdx - 1 straight to dIdx + 1
+            delta = - legCost(v, tasks, pIdx) - legCost(v, tasks, dIdx) - legCost(v, tasks, dIdx + 1);
+            if (dIdx + 1 < tasks.size()) {
+                delta += this.topologyCache.distance(cityAt(v, tasks, pIdx - 1), cityAt(v, tasks, dIdx + 1));
+            }
+        }
+        else {
+            // The pickUp is always followed by another task, so pIdx + 1 exists
+            delta = - legCost(v, tasks, pIdx) - legCost(v, tasks, pIdx + 1)
+                    + this.topologyCache.distance(cityAt(v, tasks, pIdx - 1), cityAt(v, tasks, pIdx + 1));
+            delta += - legCost(v, tasks, dIdx) - legCost(v, tasks, dIdx + 1);
+            if (dIdx + 1 < tasks.size()) {
+                delta += this.topologyCache.distance(cityAt(v, tasks, dIdx - 1), cityAt(v, tasks, dIdx + 1));
+            }
+        }
+
+        return delta * v.costPerKm();
+    }
+
+    /**
+     * Return the change in cost caused by {@link #addTaskAndSupplementaryAt} on the same index,
+     * without adding anything.
+     */
+    public double addCostDelta(VarVehicle v, Pair<VarTask, VarTask> pair, int index) {
+        List<Pair<VarTask, Integer>> tasks = this.nextTask.get(v);
+
+        // New legs: previous -> pickUp -> delivery (-> the task that used to be at index)
+        double delta = this.topologyCache.distance(cityAt(v, tasks, index - 1), pair.getLeft().city())
+                + this.topologyCache.distance(pair.getLeft().city(), pair.getRight().city());
+        if (index < tasks.size()) {
+            delta += this.topologyCache.distance(pair.getRight().city(), cityAt(v, tasks, index)) - legCost(v, tasks, index);
+        }
+
+        return delta * v.costPerKm();
+    }
+
+    /**
+     * Check if reversing the tasks in [t1Idx, t2Idx] of the route of v keeps the constraints, without reversing.
+     * No task may have both its pickUp and its delivery in the segment, and the loads of the segment
+     * (the only ones that change) must fit. O(t2Idx - t1Idx).
+     */
+    public boolean checkReverse(VarVehicle v, int t1Idx, int t2Idx) {
+        List<Pair<VarTask, Integer>> tasks = this.nextTask.get(v);
+
+        // Precedence: every supplementary task must be out of the segment
+        for (int idx = t1Idx; idx <= t2Idx; idx++) {
+            int supIdx = tasks.get(idx).getRight();
+            if (supIdx >= t1Idx && supIdx <= t2Idx) {
+                return false;
+            }
+        }
+
+        // Capacity: the loads of the reversed segment, starting from the load before it
+        int currentWeight = t1Idx == 0 ? 0 : getLoads(v).get(t1Idx - 1);
+        for (int idx = t2Idx; idx >= t1Idx; idx--) {
+            currentWeight += load(tasks.get(idx).getLeft());
+            if (currentWeight > v.capacity()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the change in cost caused by {@link #reverseSegment} on the same indices, without reversing.
+     * The distances are symmetric, so only the two legs at the ends of the segment change.
+     */
+    public double reverseCostDelta(VarVehicle v, int t1Idx, int t2Idx) {
+        List<Pair<VarTask, Integer>> tasks = this.nextTask.get(v);
+
+        double delta = this.topologyCache.distance(cityAt(v, tasks, t1Idx - 1), cityAt(v, tasks, t2Idx)) - legCost(v, tasks, t1Idx);
+        if (t2Idx + 1 < tasks.size()) {
+            delta += this.topologyCache.distance(cityAt(v, tasks, t1Idx), cityAt(v, tasks, t2Idx + 1)) - legCost(v, tasks, t2Idx + 1);
+        }
+        return delta * v.costPerKm();
+    }
+
+    /**
+     * Reverses the order of the tasks in [t1Idx, t2Idx] of the route of v (2-opt).
+     */
+    public void reverseSegment(VarVehicle v, int t1Idx, int t2Idx) {
+        List<Pair<VarTask, Integer>> tasks = mutableRoute(v);
+        hash ^= hashFrom(v, tasks, t1Idx);
+
+        Collections.reverse(tasks.subList(t1Idx, t2Idx + 1));
+        for (Pair<VarTask, Integer> pair: tasks) {
+            int supIdx = pair.getRight();
+            if (supIdx >= t1Idx && supIdx <= t2Idx) {
+                pair.setRight(t1Idx + t2Idx - supIdx);
+            }
+        }
+        hash ^= hashFrom(v, tasks, t1Idx);
+    }
+
+    /**
+     * Check if moving the segment of length tasks that starts at from so that it goes before the task at
+     * index to (an index of the current route, to == size for the end) keeps the constraints, without moving it.
+     *
+     * The tasks between the segment and its new place shift over it, so no task of the segment may have its
+     * supplementary among them, and their loads change by the net load of the segment. O(length + log n).
+     */
+    public boolean checkSegmentMove(VarVehicle v, int from, int length, int to) {
+        List<Pair<VarTask, Integer>> tasks = this.nextTask.get(v);
+        int last = from + length - 1;
+        int shiftedFrom = to < from ? to : last + 1;  // The tasks that shift over the segment: [shiftedFrom, shiftedTo)
+        int shiftedTo = to < from ? from : to;
+
+        // Precedence
+        for (int idx = from; idx <= last; idx++) {
+            int supIdx = tasks.get(idx).getRight();
+            if (supIdx >= shiftedFrom && supIdx < shiftedTo) {
+                return false;
+            }
+        }
+
+        // Capacity
+        LoadSegmentTree loadTree = getLoads(v);
+        int before = from == 0 ? 0 : loadTree.get(from - 1);
+        int segmentLoad = loadTree.get(last) - before;
+        int segmentPeak = loadTree.rangeMax(from, last + 1) - before;  // The max load inside the segment, relative to its start
+        if (to < from) {
+            int newBefore = to == 0 ? 0 : loadTree.get(to - 1);
+            return loadTree.rangeMax(to, from) + segmentLoad <= v.capacity()
+                    && newBefore + segmentPeak <= v.capacity();
+        }
+        else {
+            int newBefore = loadTree.get(to - 1) - segmentLoad;
+            return loadTree.rangeMax(last + 1, to) - segmentLoad <= v.capacity()
+                    && newBefore + segmentPeak <= v.capacity();
+        }
+    }
+
+    /**
+     * Return the change in cost caused by {@link #moveSegment} with the same arguments, without moving anything.
+     * Three legs are removed and three are added (fewer at the end of the route).
+     */
+    public double segmentMoveCostDelta(VarVehicle v, int from, int length, int to) {
+        List<Pair<VarTask, Integer>> tasks = this.nextTask.get(v);
+        int last = from + length - 1;
+        City first = cityAt(v, tasks, from);
+        City end = cityAt(v, tasks, last);
+
+        // Close the gap left by the segment
+        double delta = - legCost(v, tasks, from) - legCost(v, tasks, last + 1);
+        if (last + 1 < tasks.size()) {
+            delta += this.topologyCache.distance(cityAt(v, tasks, from - 1), cityAt(v, tasks, last + 1));
+        }
+
+        // Open the gap before the task at to
+        delta += this.topologyCache.distance(cityAt(v, tasks, to - 1), first);
+        if (to < tasks.size()) {
+            delta += this.topologyCache.distance(end, cityAt(v, tasks, to)) - legCost(v, tasks, to);
+        }
+
+        return delta * v.costPerKm();
+    }
+
+    /**
+     * Moves the segment of length tasks that starts at from so that it goes before the task at index to
+     * of the current route (to == size for the end). to must be out of [from, from + length] (Or-opt).
+     */
+    public void moveSegment(VarVehicle v, int from, int length, int to) {
+        List<Pair<VarTask, Integer>> tasks = mutableRoute(v);
+        int last = from + length - 1;
+        int first = Math.min(from, to);
+        hash ^= hashFrom(v, tasks, first);
+
+        List<Pair<VarTask, Integer>> segment = new ArrayList<>(tasks.subList(from, last + 1));
+        tasks.subList(from, last + 1).clear();
+        tasks.addAll(to < from ? to : to - length, segment);
+
+        // Update the supplementary indices: the segment and the tasks it jumped over swap places
+        for (Pair<VarTask, Integer> pair: tasks) {
+            int supIdx = pair.getRight();
+            if (to < from) {
+                if (supIdx >= from && supIdx <= last) {
+                    pair.setRight(supIdx - (from - to));
+                }
+                else if (supIdx >= to && supIdx < from) {
+                    pair.setRight(supIdx + length);
+                }
+            }
+            else {
+                if (supIdx >= from && supIdx <= last) {
+                    pair.setRight(supIdx + (to - last - 1));
+                }
+                else if (supIdx > last && supIdx < to) {
+                    pair.setRight(supIdx - length);
+                }
+            }
+        }
+        hash ^= hashFrom(v, tasks, first);
+    }
+
+    // Returns the city of the task at idx, or the start city of the vehicle for idx == -1.
+    private City cityAt(VarVehicle v, List<Pair<VarTask, Integer>> tasks, int idx) {
+        return idx < 0 ? v.startCity() : tasks.get(idx).getLeft().city();
+    }
 
-        // Update the supplementary indices of each subsequent task
-        updateIndicesAfterAdd(nextTask.get(v));
+    // Returns the distance of the leg that ends at idx (0 if idx is past the end of the route).
+    private double legCost(VarVehicle v, List<Pair<VarTask, Integer>> tasks, int idx) {
+        if (idx >= tasks.size()) {
+            return 0D;
+        }
+        return this.topologyCache.distance(cityAt(v, tasks, idx - 1), cityAt(v, tasks, idx));
+    }
+
+    // Returns the difference in distance of the leg that ends at idx if t1Idx and t2Idx were swapped.
+    private double legDeltaAfterSwap(VarVehicle v, List<Pair<VarTask, Integer>> tasks, int idx, int t1Idx, int t2Idx) {
+        if (idx >= tasks.size()) {
+            return 0D;
+        }
+        int from = (idx - 1 == t1Idx) ? t2Idx : (idx - 1 == t2Idx) ? t1Idx : idx - 1;
+        int to   = (idx == t1Idx) ? t2Idx : (idx == t2Idx) ? t1Idx : idx;
+
+        return this.topologyCache.distance(cityAt(v, tasks, from), cityAt(v, tasks, to)) - legCost(v, tasks, idx);
     }
 
     // Updates the supplementary index of each task after a removal.
@@ -222,11 +727,21 @@ public class Solution {
     }
 
     // Updates the supplementary index of each task after an addition.
-    // Basically, adds 2 to the index of each task except the first two (which were added).
-    private void updateIndicesAfterAdd(List<Pair<VarTask, Integer>> tasks) {
-        for (int idx = 2; idx < tasks.size(); idx++) {
+    // The indices at or after pickUpIdx move by one, and the ones that end up at or after deliveryIdx by one more.
+    private void updateIndicesAfterAdd(List<Pair<VarTask, Integer>> tasks, int pickUpIdx, int deliveryIdx) {
+        for (int idx = 0; idx < tasks.size(); idx++) {
+            if (idx == pickUpIdx || idx == deliveryIdx) {
+                continue;  // The added tasks already point to each other
+            }
             Pair<VarTask, Integer> pair = tasks.get(idx);
-            pair.setRight(pair.getRight()+2);
+            int supIdx = pair.getRight();
+            if (supIdx >= pickUpIdx) {
+                supIdx++;
+            }
+            if (supIdx >= deliveryIdx) {
+                supIdx++;
+            }
+            pair.setRight(supIdx);
         }
     }
 
@@ -245,56 +760,103 @@ public class Solution {
      * Then multiply the vehicle's distance with its costPerKm and sum up all the costs for all vehicles.
      */
     public double cost() {
-        Double totalCost = 0D;
-        for (Entry<VarVehicle, List<Pair<VarTask, Integer>>> entry: nextTask.entrySet()) {
-            Double vehicleCost = 0D;
-
-            // skip vehicles with no tasks
-            if (this.getNextTask(entry.getKey()) == null) {
-                continue;
+        double cost = this.totalCost;
+        if (Double.isNaN(cost)) {
+            cost = 0D;
+            for (VarVehicle vehicle: nextTask.keySet()) {
+                cost += routeCost(vehicle);
             }
+            this.totalCost = cost;
+        }
+        return cost;
+    }
 
-            // Add the starting cost from the vehicle's start city to the first task
-            vehicleCost = entry.getKey().startCity().distanceTo(this.getNextTask(entry.getKey()).city());
+    /**
+     * Return the cost of the route of vehicle v (0 if it has no tasks). It is cached until the route changes.
+     */
+    public double routeCost(VarVehicle v) {
+        return this.routeCosts.computeIfAbsent(v, this::computeRouteCost);
+    }
 
-            // Loop all the tasks in a vehicle
-            for (int idx = 0; idx < entry.getValue().size() - 1; idx++) { // -1 because we dont want the last element
-                VarTask task = entry.getValue().get(idx).getLeft();
-                VarTask nextTask = entry.getValue().get(idx + 1).getLeft();
-                vehicleCost += task.city().distanceTo(nextTask.city());
-            }
-            totalCost += vehicleCost * entry.getKey().costPerKm();
+    /**
+     * Return the total cost computed again from the routes, without reading or filling the caches
+     * (e.g. to measure or to check the cached one).
+     */
+    public double recomputeCost() {
+        double cost = 0D;
+        for (VarVehicle vehicle: nextTask.keySet()) {
+            cost += computeRouteCost(vehicle);
+        }
+        return cost;
+    }
+
+    private double computeRouteCost(VarVehicle vehicle) {
+        List<Pair<VarTask, Integer>> tasks = this.nextTask.get(vehicle);
+
+        // skip vehicles with no tasks
+        if (tasks.isEmpty()) {
+            return 0D;
         }
-        return totalCost;
+
+        // Add the starting cost from the vehicle's start city to the first task
+        double vehicleCost = this.topologyCache.distance(vehicle.startCity(), tasks.get(0).getLeft().city());
+
+        // Loop all the tasks in a vehicle
+        for (int idx = 0; idx < tasks.size() - 1; idx++) { // -1 because we dont want the last element
+            VarTask task = tasks.get(idx).getLeft();
+            VarTask nextTask = tasks.get(idx + 1).getLeft();
+            vehicleCost += this.topologyCache.distance(task.city(), nextTask.city());
+        }
+        return vehicleCost * vehicle.costPerKm();
+    }
+
+    /**
+     * A 64-bit hash of the routes: the same tasks, in the same order, on the same vehicles give the same
+     * fingerprint. Used to tell duplicate solutions apart without comparing them.
+     *
+     * It is the Zobrist hash (see {@link Zobrist}) of every (task stop, vehicle, position) of the solution,
+     * kept up to date by the methods that modify the routes.
+     */
+    public long fingerprint() {
+        return hash;
+    }
+
+    /**
+     * Return the fingerprint that the solution would have after {@link #swapVarTasksFor} on the same indices,
+     * without swapping (in O(1)).
+     */
+    public long swapFingerprint(VarVehicle v, int t1Idx, int t2Idx) {
+        List<Pair<VarTask, Integer>> tasks = this.nextTask.get(v);
+        VarTask t1 = tasks.get(t1Idx).getLeft();
+        VarTask t2 = tasks.get(t2Idx).getLeft();
+        return hash ^ key(t1, v, t1Idx) ^ key(t2, v, t2Idx) ^ key(t1, v, t2Idx) ^ key(t2, v, t1Idx);
     }
 
+    // The Zobrist key of a task at a position of the route of v
+    private static long key(VarTask task, VarVehicle v, int position) {
+        return Zobrist.key(task.task.id, task.type == Type.Delivery, v.index(), position);
+    }
+
+    // The xor of the keys of the tasks of the route from the index from to the end
+    private long hashFrom(VarVehicle v, List<Pair<VarTask, Integer>> tasks, int from) {
+        long routeHash = 0;
+        for (int idx = from; idx < tasks.size(); idx++) {
+            routeHash ^= key(tasks.get(idx).getLeft(), v, idx);
+        }
+        return routeHash;
+    }
 
     public void printCost() {
         System.out.println("[INF] Analyze cost:");
-        Double totalCost = 0D;
-        for (Entry<VarVehicle, List<Pair<VarTask, Integer>>> entry: nextTask.entrySet()) {
-            Double vehicleCost = 0D;
-
+        for (VarVehicle vehicle: nextTask.keySet()) {
             // skip vehicles with no tasks
-            if (this.getNextTask(entry.getKey()) == null) {
+            if (this.getNextTask(vehicle) == null) {
                 continue;
             }
-
-            // Add the starting cost from the vehicle's start city to the first task
-            vehicleCost = entry.getKey().startCity().distanceTo(this.getNextTask(entry.getKey()).city());
-
-            // Loop all the tasks in a vehicle
-            for (int idx = 0; idx < entry.getValue().size() - 1; idx++) { // -1 because we dont want the last element
-                VarTask task = entry.getValue().get(idx).getLeft();
-                VarTask nextTask = entry.getValue().get(idx + 1).getLeft();
-                vehicleCost += task.city().distanceTo(nextTask.city());
-            }
-            Double vehicleSum = vehicleCost * entry.getKey().costPerKm();
-            System.out.println("|-Vehicle Cost: " + vehicleSum);
-            totalCost += vehicleSum;
+            System.out.println("|-Vehicle Cost: " + routeCost(vehicle));
         }
 
-        System.out.println("+-> Total cost: " + totalCost);
+        System.out.println("+-> Total cost: " + cost());
     }
 
     /**
@@ -314,9 +876,7 @@ public class Solution {
                 Plan plan = new Plan(vehicle.startCity());
 
                 // Move from vehicle's stat city to first task's city
-                for (City cityInPath: vehicle.startCity().pathTo(this.getNextTask(vehicle).city())) {
-                    plan.appendMove(cityInPath);
-                }
+                this.topologyCache.appendMoves(plan, vehicle.startCity(), this.getNextTask(vehicle).city());
 
                 // Make all the plan actions
                 for (int idx = 0; idx < this.getTasksSize(vehicle); idx++) {
@@ -333,9 +893,7 @@ public class Solution {
                     // Then if task has next task in the list, move nextTask's city
                     if (idx < this.getTasksSize(vehicle) - 1) {
                         City nextTaskCity = this.nextTask.get(vehicle).get(idx + 1).getLeft().city();
-                        for (City cityInPath: task.city().pathTo(nextTaskCity)) {
-                            plan.appendMove(cityInPath);
-                        }
+                        this.topologyCache.appendMoves(plan, task.city(), nextTaskCity);
                     }
                 }
 
@@ -0,0 +1,190 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+
+import logist.task.Task;
+import logist.task.TaskSet;
+import model.VarTask.Type;
+import utils.Pair;
+import utils.TopologyCache;
+
+/**
+ * Compact binary checkpoints of solutions in a memory-mapped file, to resume a search after the JVM dies
+ * or to seed a later run.
+ *
+ * The file starts with a header (magic, version, position of the published record) followed by two slots of
+ * the same size. A record is the cost, the number of routes and for each route the vehicle index, the number
+ * of stops and the stops. A stop is encoded like {@link ArraySolution}: (taskId << 1) | DELIVERY, followed by
+ * the pickup city, the delivery city and the weight of its task, so that a task id reused for another task is
+ * not mistaken for it.
+ *
+ * Only the solutions that improve on the published one are kept. A new record goes to the slot that is not
+ * published and is forced to the disk before the header points to it, so the published record is always
+ * complete, even if the machine dies in the middle of an append.
+ */
+public class SolutionCheckpoint implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    private static final int MAGIC = 0x534c5343;  // "SLSC"
+    private static final int VERSION = 2;
+    private static final int PUBLISHED = 8;       // The position of the published record in the header (0 if there is none)
+    private static final int HEADER = 12;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slotSize;
+    private int published = 0;   // The position of the published record (0 if there is none)
+    private double bestCost = Double.POSITIVE_INFINITY;  // The cost of the published record
+
+    /**
+     * Open (or create) a checkpoint file. The published record of an existing file is kept.
+     *
+     * @param capacity The size of the mapped file in bytes (an existing file keeps its size, which sets its slots)
+     * @throws IllegalArgumentException If the file exists but is not a checkpoint
+     */
+    public SolutionCheckpoint(String path, int capacity) throws IOException {
+        Path file = Paths.get(path);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean empty = this.channel.size() == 0;
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, empty ? capacity : this.channel.size());
+        this.slotSize = (this.buffer.limit() - HEADER) / 2;
+
+        if (empty) {
+            this.buffer.putInt(0, MAGIC);
+            this.buffer.putInt(4, VERSION);
+            clear();
+        }
+        else if (this.buffer.limit() < HEADER || this.buffer.getInt(0) != MAGIC || this.buffer.getInt(4) != VERSION
+                || !isSlot(this.buffer.getInt(PUBLISHED))) {
+            this.channel.close();
+            throw new IllegalArgumentException("Not a solution checkpoint: " + path);
+        }
+        else {
+            this.published = this.buffer.getInt(PUBLISHED);
+            if (this.published != 0) {
+                this.bestCost = this.buffer.getDouble(this.published);
+            }
+        }
+    }
+
+    public SolutionCheckpoint(String path) throws IOException {
+        this(path, DEFAULT_CAPACITY);
+    }
+
+    // True if position is the start of one of the two slots (or 0 for no record)
+    private boolean isSlot(int position) {
+        return position == 0 || position == HEADER || position == HEADER + this.slotSize;
+    }
+
+    /**
+     * Drop the published record (e.g. at the start of a run for a new task set).
+     */
+    public synchronized void clear() {
+        this.published = 0;
+        this.bestCost = Double.POSITIVE_INFINITY;
+        this.buffer.putInt(PUBLISHED, 0);
+        this.buffer.force();
+    }
+
+    /**
+     * Write a solution to the disk and publish it if its cost improves on the published one.
+     *
+     * @return True if the solution was published
+     * @throws IllegalArgumentException If the solution does not fit in a slot of the file
+     */
+    public synchronized boolean append(Solution solution, List<VarVehicle> vehicles, double cost) {
+        int length = 8 + 4;
+        for (VarVehicle v: vehicles) {
+            length += 8 + 16 * solution.getTasksSize(v);
+        }
+        if (length > this.slotSize) {
+            throw new IllegalArgumentException("The solution needs " + length + " bytes, more than a slot of the checkpoint");
+        }
+        if (cost >= this.bestCost) {
+            return false;
+        }
+
+        // Write the record to the other slot and force it before the header points to it
+        int slot = (this.published == HEADER) ? HEADER + this.slotSize : HEADER;
+        ByteBuffer record = this.buffer.duplicate();
+        record.position(slot);
+        record.putDouble(cost);
+        record.putInt(vehicles.size());
+        for (VarVehicle v: vehicles) {
+            int size = solution.getTasksSize(v);
+            record.putInt(v.index());
+            record.putInt(size);
+            for (int idx = 0; idx < size; idx++) {
+                VarTask task = solution.getTask(v, idx);
+                record.putInt((task.task().id << 1) | (task.type() == Type.Delivery ? ArraySolution.DELIVERY : ArraySolution.PICKUP));
+                record.putInt(task.task().pickupCity.id);
+                record.putInt(task.task().deliveryCity.id);
+                record.putInt(task.task().weight);
+            }
+        }
+        this.buffer.force();
+
+        this.buffer.putInt(PUBLISHED, slot);
+        this.buffer.force();
+        this.published = slot;
+        this.bestCost = cost;
+        return true;
+    }
+
+    /**
+     * Rebuild the published solution of the checkpoint against a task set. Tasks are matched by id, cities and
+     * weight like the warm start of {@link Solution}: tasks that are not in the task set and routes of vehicles
+     * that are gone are dropped. Tasks of the task set that are not in the checkpoint are not added and the
+     * capacities are not checked (see the warm start of the search).
+     *
+     * @return The solution and the cost it had when it was written, or null if the checkpoint is empty
+     */
+    public synchronized Pair<Solution, Double> load(List<VarVehicle> vehicles, TaskSet tasks, TopologyCache topologyCache) {
+        if (this.published == 0) {
+            return null;
+        }
+
+        HashMap<Integer, Task> tasksById = new HashMap<>();
+        for (Task task: tasks) {
+            tasksById.put(task.id, task);
+        }
+
+        ByteBuffer record = this.buffer.duplicate();
+        record.position(this.published);
+        double cost = record.getDouble();
+        int routes = record.getInt();
+        Solution solution = new Solution(vehicles, topologyCache);
+        for (int route = 0; route < routes; route++) {
+            int index = record.getInt();
+            int size = record.getInt();
+            for (int idx = 0; idx < size; idx++) {
+                int stop = record.getInt();
+                int pickupCity = record.getInt();
+                int deliveryCity = record.getInt();
+                int weight = record.getInt();
+                Task task = tasksById.get(stop >>> 1);
+                if (index < vehicles.size() && task != null && task.pickupCity.id == pickupCity
+                        && task.deliveryCity.id == deliveryCity && task.weight == weight) {
+                    VarTask varTask = new VarTask(task, (stop & 1) == ArraySolution.DELIVERY ? Type.Delivery : Type.PickUp);
+                    solution.addVarTask(vehicles.get(index), varTask);
+                }
+            }
+        }
+        return new Pair<>(solution, cost);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.buffer.force();
+        this.channel.close();
+    }
+}
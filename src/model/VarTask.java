@@ -49,4 +49,8 @@ public class VarTask {
         return type;
     }
 
+    public Task task() {
+        return task;
+    }
+
 }
@@ -12,12 +12,14 @@ import java.awt.Color;
  */
 public class VarVehicle {
 
+    private int index;  // Dense index of the vehicle in the list it was created from
     private Integer capacity;
     private Integer costPerKm;
     private City startCity;
     private Color color;
 
-    public VarVehicle(Integer capacity, Integer costPerKm, City startCity, Color  color) {
+    public VarVehicle(int index, Integer capacity, Integer costPerKm, City startCity, Color  color) {
+        this.index = index;
         this.capacity = capacity;
         this.costPerKm = costPerKm;
         this.startCity = startCity;
@@ -30,17 +32,24 @@ public class VarVehicle {
     }
 
     /**
+     * The capacity of each VarVehicle is what is left once the tasks the vehicle already carries are counted.
+     *
      * @param vehicles
      * @return
      */
     public static List<VarVehicle> toVarVehicle(List<Vehicle> vehicles) {
         List<VarVehicle> ourVehicles = new ArrayList<>();
         for (Vehicle v: vehicles) {
-            ourVehicles.add(new VarVehicle(v.capacity(), v.costPerKm(), v.getCurrentCity(), v.color()));
+            int freeCapacity = v.capacity() - v.getCurrentTasks().weightSum();
+            ourVehicles.add(new VarVehicle(ourVehicles.size(), freeCapacity, v.costPerKm(), v.getCurrentCity(), v.color()));
         }
         return ourVehicles;
     }
 
+    public int index() {
+        return index;
+    }
+
     public Integer capacity() {
         return capacity;
     }
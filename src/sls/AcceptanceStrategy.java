@@ -0,0 +1,26 @@
+package sls;
+
+import java.util.SplittableRandom;
+
+/**
+ * Decides whether the local search moves from its current solution to a candidate neighbor.
+ *
+ * Strategies may keep state (e.g. a history of costs), so each trajectory of the search
+ * gets its own instance and calls {@link #reset} before its first iteration.
+ */
+public interface AcceptanceStrategy {
+
+    /**
+     * Prepare the strategy for a new trajectory starting from a solution with cost initialCost.
+     */
+    void reset(double initialCost);
+
+    /**
+     * @param currentCost   The cost of the current solution
+     * @param candidateCost The cost of the candidate neighbor
+     * @param progress      The fraction of the search budget (time or iterations) already used, in [0, 1]
+     * @param randGen       The random generator of the trajectory
+     * @return True if the candidate should replace the current solution
+     */
+    boolean accept(double currentCost, double candidateCost, double progress, SplittableRandom randGen);
+}
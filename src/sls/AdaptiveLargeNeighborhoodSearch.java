@@ -0,0 +1,385 @@
+package sls;
+
+import logist.plan.Plan;
+import logist.task.Task;
+import logist.task.TaskSet;
+import model.Solution;
+import model.VarTask;
+import model.VarTask.Type;
+import model.VarVehicle;
+import utils.Pair;
+import utils.Timer;
+import utils.TopologyCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive Large Neighborhood Search (ruin and recreate).
+ *
+ * Each iteration removes a part of the tasks of the current solution with a destroy operator and inserts
+ * them back with a repair operator. The operators are picked by roulette wheel on weights that adapt,
+ * every SEGMENT iterations, to how often each operator found a new best, an improvement or an accepted
+ * solution. The candidate replaces the current solution if the acceptance strategy accepts it
+ * (simulated annealing by default).
+ */
+public class AdaptiveLargeNeighborhoodSearch implements Solver {
+
+    public enum Destroy {Random, Worst, Related, Route};
+    public enum Repair {Greedy, Regret};
+
+    private static final long SHUTDOWN_TIME = 500;  // The time (ms) kept to shutdown before the timeout
+    private static final int SEGMENT = 100;         // The iterations between two updates of the weights
+    private static final double REACTION = 0.1;     // How fast the weights follow the scores of the last segment
+    private static final double SCORE_BEST = 33;    // The score of an operator that finds a new best solution
+    private static final double SCORE_BETTER = 9;   // ... that improves the current solution
+    private static final double SCORE_ACCEPTED = 13;  // ... that finds a worse solution which is accepted
+    private static final double WORST_RANDOMNESS = 3;    // The randomness of the worst removal (higher is less random)
+    private static final double RELATED_RANDOMNESS = 6;  // The randomness of the related removal
+
+    private int iterations;
+    private long timeout;  // The time that the algorithm has available
+    private TopologyCache topologyCache;  // The precomputed distances of the topology
+    private long seed = 1;  // The seed of the random generator
+    private double minRemoval = 0.1;  // The min fraction of the tasks removed by an iteration
+    private double maxRemoval = 0.4;  // The max fraction of the tasks removed by an iteration
+    private int regretK = 3;  // The k of the regret repair (and of the initial solution)
+    private Supplier<AcceptanceStrategy> acceptance = () -> new SimulatedAnnealing(0.05, 0.0005);
+    private SearchMetrics metrics = null;  // Telemetry of the search (null to disable it)
+
+    // Every apply (and every stop) starts a new run. A search of an older run terminates and cannot publish.
+    private final AtomicLong run = new AtomicLong();
+    private volatile Pair<Solution, Double> incumbent = null;  // The best solution of the current run so far
+
+    public AdaptiveLargeNeighborhoodSearch(int iterations, long timeout, TopologyCache topologyCache) {
+        this.iterations = iterations;
+        this.timeout = timeout;
+        this.topologyCache = topologyCache;
+    }
+
+    // Getters and Setters.
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setRemoval(double minRemoval, double maxRemoval) {
+        this.minRemoval = minRemoval;
+        this.maxRemoval = maxRemoval;
+    }
+
+    public void setRegretK(int regretK) {
+        this.regretK = regretK;
+    }
+
+    public void setAcceptanceStrategy(Supplier<AcceptanceStrategy> acceptance) {
+        this.acceptance = acceptance;
+    }
+
+    public void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void stop() {
+        run.incrementAndGet();
+    }
+
+    @Override
+    public Solution getBestSoFar() {
+        Pair<Solution, Double> best = incumbent;
+        return best == null ? null : best.getLeft();
+    }
+
+    // Publish a solution as the incumbent if it belongs to the current run
+    private synchronized void publish(long runId, Solution solution, double cost) {
+        if (runId == run.get()) {
+            incumbent = new Pair<>(solution, cost);
+        }
+    }
+
+    /**
+     * Apply the adaptive large neighborhood search
+     */
+    @Override
+    public List<Plan> apply(List<VarVehicle> vehicles, TaskSet tasks) {
+        long startTime = System.currentTimeMillis();
+        SplittableRandom randGen = new SplittableRandom(seed);
+        long runId = run.incrementAndGet();
+        incumbent = null;
+        if (metrics != null) {
+            metrics.reset();
+        }
+
+        // The initial solution: regret insertion of all the tasks
+        Solution current = new Solution(vehicles, topologyCache);
+        List<Pair<VarTask, VarTask>> pairs = new ArrayList<>();
+        for (Task t: tasks) {
+            pairs.add(new Pair<>(new VarTask(t, Type.PickUp), new VarTask(t, Type.Delivery)));
+        }
+        InsertionHeuristics.regretInsert(current, pairs, vehicles, regretK);
+        double currentCost = current.cost();
+        System.out.println("[INF] Initial solution cost: " + currentCost);
+
+        Solution best = current;
+        double bestCost = currentCost;
+        int bestIter = 0;
+        publish(runId, best, bestCost);
+
+        AcceptanceStrategy strategy = acceptance.get();
+        strategy.reset(currentCost);
+
+        // The weights of the operators, and their scores and uses in the current segment
+        double[] destroyWeights = new double[Destroy.values().length];
+        double[] repairWeights = new double[Repair.values().length];
+        double[] destroyScores = new double[destroyWeights.length];
+        double[] repairScores = new double[repairWeights.length];
+        int[] destroyUses = new int[destroyWeights.length];
+        int[] repairUses = new int[repairWeights.length];
+        Arrays.fill(destroyWeights, 1D);
+        Arrays.fill(repairWeights, 1D);
+
+        Timer destroyTimer = new Timer(Timer.Type.CPU_TIME);
+        Timer repairTimer = new Timer(Timer.Type.CPU_TIME);
+        long allocatedBytes = 0;
+        if (metrics != null) {
+            metrics.updateBestCost(bestCost);
+            allocatedBytes = SearchMetrics.currentThreadAllocatedBytes();
+        }
+
+        int iterCounter = 0;
+        while (tasks.size() > 0) {
+            int destroy = roulette(destroyWeights, randGen);
+            int repair = roulette(repairWeights, randGen);
+
+            // Ruin and recreate a copy of the current solution
+            if (metrics != null) {
+                destroyTimer.start();
+            }
+            Solution candidate = new Solution(current);
+            int toRemove = numToRemove(tasks.size(), randGen);
+            List<Pair<VarTask, VarTask>> removed = destroy(Destroy.values()[destroy], candidate, vehicles, toRemove, randGen);
+            if (metrics != null) {
+                repairTimer.start();
+            }
+            long insertions = repair(Repair.values()[repair], candidate, removed, vehicles);
+            double candidateCost = candidate.cost();
+            iterCounter++;
+
+            // Score the operators
+            double score = 0;
+            double progress = progress(System.currentTimeMillis() - startTime, iterCounter);
+            if (candidateCost < bestCost) {
+                best = candidate;
+                bestCost = candidateCost;
+                bestIter = iterCounter;
+                publish(runId, best, bestCost);
+                score = SCORE_BEST;
+            }
+            else if (candidateCost < currentCost) {
+                score = SCORE_BETTER;
+            }
+            else if (strategy.accept(currentCost, candidateCost, progress, randGen)) {
+                score = SCORE_ACCEPTED;
+            }
+            if (score > 0) {
+                current = candidate;
+                currentCost = candidateCost;
+            }
+            destroyScores[destroy] += score;
+            repairScores[repair] += score;
+            destroyUses[destroy]++;
+            repairUses[repair]++;
+
+            if (iterCounter % SEGMENT == 0) {
+                updateWeights(destroyWeights, destroyScores, destroyUses);
+                updateWeights(repairWeights, repairScores, repairUses);
+            }
+
+            if (metrics != null) {
+                double repairSeconds = repairTimer.stop();
+                metrics.addIteration(destroyTimer.stop() - repairSeconds, repairSeconds);
+                metrics.addRuinAndRecreate("destroy" + Destroy.values()[destroy], "repair" + Repair.values()[repair],
+                        removed.size(), insertions);
+                metrics.updateBestCost(bestCost);
+            }
+
+            if (terminationCondition(System.currentTimeMillis() - startTime, iterCounter, runId)) {
+                break;
+            }
+        }
+
+        if (metrics != null) {
+            metrics.addAllocation(SearchMetrics.currentThreadAllocatedBytes() - allocatedBytes, iterCounter);
+        }
+
+        System.out.println("[INF] Best solution cost: " + bestCost + " on iter: " + bestIter + " of " + iterCounter);
+        best.printCost();
+        return best.toPlans(vehicles);
+    }
+
+    /**
+     * @return Return true if we must terminate the search
+     */
+    private boolean terminationCondition(long elapsedTime, int iterCounter, long runId) {
+        return runId != run.get() || elapsedTime + SHUTDOWN_TIME >= timeout || iterCounter >= iterations;
+    }
+
+    /**
+     * @return The fraction of the search budget already used (the time or the iterations, whichever runs out first)
+     */
+    private double progress(long elapsedTime, int iterCounter) {
+        double timeProgress = (double) elapsedTime / Math.max(1, timeout - SHUTDOWN_TIME);
+        double iterProgress = (double) iterCounter / iterations;
+        return Math.min(1D, Math.max(timeProgress, iterProgress));
+    }
+
+    // The number of tasks to remove, uniform between the min and max fractions (at least one)
+    private int numToRemove(int numTasks, SplittableRandom randGen) {
+        int min = Math.max(1, (int) Math.round(minRemoval * numTasks));
+        int max = Math.max(min, (int) Math.round(maxRemoval * numTasks));
+        return Math.min(numTasks, min + randGen.nextInt(max - min + 1));
+    }
+
+    // Pick an index with probability proportional to its weight
+    private int roulette(double[] weights, SplittableRandom randGen) {
+        double total = 0;
+        for (double weight: weights) {
+            total += weight;
+        }
+        double pick = randGen.nextDouble(total);
+        for (int idx = 0; idx < weights.length - 1; idx++) {
+            pick -= weights[idx];
+            if (pick < 0) {
+                return idx;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    // Move the weights towards the average score of the segment and start a new segment
+    private void updateWeights(double[] weights, double[] scores, int[] uses) {
+        for (int idx = 0; idx < weights.length; idx++) {
+            if (uses[idx] > 0) {
+                weights[idx] = (1 - REACTION) * weights[idx] + REACTION * scores[idx] / uses[idx];
+            }
+            weights[idx] = Math.max(weights[idx], 0.01);  // Every operator keeps a chance to be picked
+            scores[idx] = 0;
+            uses[idx] = 0;
+        }
+    }
+
+    /**
+     * Insert the removed tasks back with a repair operator.
+     *
+     * @return The number of insertions of a task in a vehicle that were evaluated
+     */
+    private long repair(Repair repair, Solution solution, List<Pair<VarTask, VarTask>> removed, List<VarVehicle> vehicles) {
+        switch (repair) {
+            case Greedy:
+                return InsertionHeuristics.greedyInsert(solution, removed, vehicles);
+            case Regret:
+                return InsertionHeuristics.regretInsert(solution, removed, vehicles, regretK);
+            default:
+                throw new AssertionError("Unknown repair operator: " + repair);
+        }
+    }
+
+    /**
+     * Remove toRemove tasks (pickUp and delivery) from the solution with a destroy operator.
+     *
+     * @return The removed tasks as (pickUp, delivery) pairs
+     */
+    private List<Pair<VarTask, VarTask>> destroy(Destroy destroy, Solution solution, List<VarVehicle> vehicles,
+            int toRemove, SplittableRandom randGen) {
+        List<Pair<VarTask, VarTask>> removed = new ArrayList<>();
+        switch (destroy) {
+            case Random:
+                for (int count = 0; count < toRemove; count++) {
+                    List<Pair<VarVehicle, Integer>> pickUps = pickUps(solution, vehicles);
+                    removed.add(remove(solution, pickUps.get(randGen.nextInt(pickUps.size()))));
+                }
+                break;
+
+            case Worst:
+                // Remove the tasks that save the most, with some randomness. The savings change after each removal.
+                for (int count = 0; count < toRemove; count++) {
+                    List<Pair<VarVehicle, Integer>> pickUps = pickUps(solution, vehicles);
+                    List<Pair<Double, Integer>> savings = new ArrayList<>();
+                    for (int idx = 0; idx < pickUps.size(); idx++) {
+                        Pair<VarVehicle, Integer> pickUp = pickUps.get(idx);
+                        savings.add(new Pair<>(solution.removeCostDelta(pickUp.getLeft(), pickUp.getRight()), idx));
+                    }
+                    Collections.sort(savings, (s1, s2) -> Double.compare(s1.getLeft(), s2.getLeft()));
+                    int pick = randomizedIndex(savings.size(), WORST_RANDOMNESS, randGen);
+                    removed.add(remove(solution, pickUps.get(savings.get(pick).getRight())));
+                }
+                break;
+
+            case Related:
+                // Remove a random task and then the tasks closest to the removed ones
+                List<Pair<VarVehicle, Integer>> seeds = pickUps(solution, vehicles);
+                removed.add(remove(solution, seeds.get(randGen.nextInt(seeds.size()))));
+                while (removed.size() < toRemove) {
+                    Pair<VarTask, VarTask> reference = removed.get(randGen.nextInt(removed.size()));
+                    List<Pair<VarVehicle, Integer>> pickUps = pickUps(solution, vehicles);
+                    List<Pair<Double, Integer>> relatedness = new ArrayList<>();
+                    for (int idx = 0; idx < pickUps.size(); idx++) {
+                        Pair<VarVehicle, Integer> pickUp = pickUps.get(idx);
+                        Pair<VarTask, VarTask> pair = solution.getTaskAndSupplementaryAt(pickUp.getLeft(), pickUp.getRight());
+                        double distance = topologyCache.distance(reference.getLeft().city(), pair.getLeft().city())
+                                + topologyCache.distance(reference.getRight().city(), pair.getRight().city());
+                        relatedness.add(new Pair<>(distance, idx));
+                    }
+                    Collections.sort(relatedness, (r1, r2) -> Double.compare(r1.getLeft(), r2.getLeft()));
+                    int pick = randomizedIndex(relatedness.size(), RELATED_RANDOMNESS, randGen);
+                    removed.add(remove(solution, pickUps.get(relatedness.get(pick).getRight())));
+                }
+                break;
+
+            case Route:
+                // Empty a random route (ignores toRemove, the route is removed whole)
+                List<VarVehicle> used = new ArrayList<>();
+                for (VarVehicle v: vehicles) {
+                    if (solution.getTasksSize(v) > 0) {
+                        used.add(v);
+                    }
+                }
+                VarVehicle v = used.get(randGen.nextInt(used.size()));
+                while (solution.getTasksSize(v) > 0) {
+                    removed.add(remove(solution, new Pair<>(v, 0)));
+                }
+                break;
+        }
+        return removed;
+    }
+
+    // Pick an index of a sorted list of the given size, biased towards the front: floor(y^randomness * size)
+    private int randomizedIndex(int size, double randomness, SplittableRandom randGen) {
+        return (int) (Math.pow(randGen.nextDouble(), randomness) * size);
+    }
+
+    // The (vehicle, index) of every pickUp of the solution
+    private List<Pair<VarVehicle, Integer>> pickUps(Solution solution, List<VarVehicle> vehicles) {
+        List<Pair<VarVehicle, Integer>> pickUps = new ArrayList<>();
+        for (VarVehicle v: vehicles) {
+            for (int idx = 0; idx < solution.getTasksSize(v); idx++) {
+                if (solution.getTask(v, idx).type() == Type.PickUp) {
+                    pickUps.add(new Pair<>(v, idx));
+                }
+            }
+        }
+        return pickUps;
+    }
+
+    // Remove the task whose pickUp is at the given (vehicle, index) and return it
+    private Pair<VarTask, VarTask> remove(Solution solution, Pair<VarVehicle, Integer> pickUp) {
+        Pair<VarTask, VarTask> pair = solution.getTaskAndSupplementaryAt(pickUp.getLeft(), pickUp.getRight());
+        solution.removeTaskAndSupplementaryAt(pickUp.getLeft(), pair, pickUp.getRight());
+        return pair;
+    }
+}
@@ -0,0 +1,179 @@
+package sls;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the k best (lowest score) elements found by a search.
+ *
+ * The scores are primitive doubles in a bounded binary heap with the worst entry at the root, so
+ * {@link #accepts} is O(1) and {@link #add} is O(log k). Entries are deduplicated by a fingerprint,
+ * so equal-cost copies of the same solution do not push the other elites out.
+ *
+ * The search checks {@link #accepts} first and only then computes the fingerprint and adds the element,
+ * so the main loop allocates nothing for the solutions that do not enter the archive.
+ */
+public class EliteArchive<D> {
+
+    private final double[] scores;    // Heap ordered, the worst score at index 0
+    private final long[] fingerprints;
+    private final int[] iterations;   // The iteration where each element was found
+    private final Object[] elements;
+    private int size = 0;
+
+    /**
+     * @param capacity The maximum number of elements that the archive can contain.
+     */
+    public EliteArchive(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive: " + capacity);
+        }
+        this.scores = new double[capacity];
+        this.fingerprints = new long[capacity];
+        this.iterations = new int[capacity];
+        this.elements = new Object[capacity];
+    }
+
+    /**
+     * @return True if an element with this score would enter the archive (unless it is a duplicate)
+     */
+    public boolean accepts(double score) {
+        return size < scores.length || score < scores[0];
+    }
+
+    /**
+     * Add an element if its score enters the top k and no element with the same fingerprint is stored.
+     * If the archive is full the worst element is dropped.
+     *
+     * @return True if the element was added
+     */
+    public boolean add(D element, double score, long fingerprint, int iteration) {
+        if (!accepts(score)) {
+            return false;
+        }
+        for (int idx = 0; idx < size; idx++) {
+            if (fingerprints[idx] == fingerprint) {
+                return false;
+            }
+        }
+
+        if (size < scores.length) {
+            set(size, element, score, fingerprint, iteration);
+            siftUp(size++);
+        }
+        else {
+            set(0, element, score, fingerprint, iteration);
+            siftDown(0);
+        }
+        return true;
+    }
+
+    // Getters and Setters.
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return The best (smallest) score, or NaN if the archive is empty
+     */
+    public double bestScore() {
+        int idx = bestIndex();
+        return idx < 0 ? Double.NaN : scores[idx];
+    }
+
+    /**
+     * @return The element with the best score, or null if the archive is empty
+     */
+    @SuppressWarnings("unchecked")
+    public D best() {
+        int idx = bestIndex();
+        return idx < 0 ? null : (D) elements[idx];
+    }
+
+    /**
+     * @return The iteration where the best element was found, or -1 if the archive is empty
+     */
+    public int bestIteration() {
+        int idx = bestIndex();
+        return idx < 0 ? -1 : iterations[idx];
+    }
+
+    /**
+     * @return The second best score, or NaN if the archive has less than two elements
+     */
+    public double secondBestScore() {
+        if (size < 2) {
+            return Double.NaN;
+        }
+        double[] sorted = Arrays.copyOf(scores, size);
+        Arrays.sort(sorted);
+        return sorted[1];
+    }
+
+    // The leaves hold the best scores, k is small so a scan is enough. Ties go to the earliest iteration.
+    private int bestIndex() {
+        int best = -1;
+        for (int idx = 0; idx < size; idx++) {
+            if (best < 0 || scores[idx] < scores[best]
+                    || (scores[idx] == scores[best] && iterations[idx] < iterations[best])) {
+                best = idx;
+            }
+        }
+        return best;
+    }
+
+    private void set(int idx, Object element, double score, long fingerprint, int iteration) {
+        elements[idx] = element;
+        scores[idx] = score;
+        fingerprints[idx] = fingerprint;
+        iterations[idx] = iteration;
+    }
+
+    private void swap(int i, int j) {
+        Object element = elements[i];
+        double score = scores[i];
+        long fingerprint = fingerprints[i];
+        int iteration = iterations[i];
+        set(i, elements[j], scores[j], fingerprints[j], iterations[j]);
+        set(j, element, score, fingerprint, iteration);
+    }
+
+    private void siftUp(int idx) {
+        while (idx > 0) {
+            int parent = (idx - 1) / 2;
+            if (scores[idx] <= scores[parent]) {
+                return;
+            }
+            swap(idx, parent);
+            idx = parent;
+        }
+    }
+
+    private void siftDown(int idx) {
+        while (true) {
+            int worst = idx;
+            int left = 2 * idx + 1;
+            int right = left + 1;
+            if (left < size && scores[left] > scores[worst]) {
+                worst = left;
+            }
+            if (right < size && scores[right] > scores[worst]) {
+                worst = right;
+            }
+            if (worst == idx) {
+                return;
+            }
+            swap(idx, worst);
+            idx = worst;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "EliteArchive [size=" + size + ", bestScore=" + bestScore() + ", bestIteration=" + bestIteration() + "]";
+    }
+}
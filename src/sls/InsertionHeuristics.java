@@ -0,0 +1,118 @@
+package sls;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import model.Insertion;
+import model.Solution;
+import model.VarTask;
+import model.VarVehicle;
+import utils.Pair;
+
+/**
+ * Insertion heuristics that put a list of tasks (pairs of pickUp and delivery) in a solution,
+ * each one at its cheapest feasible positions. Used to build initial solutions and to repair destroyed ones.
+ *
+ * The best insertion of every task in every vehicle is kept in a table. After an insertion only the
+ * column of the vehicle that changed is computed again. Both the initial table and the updates are
+ * computed in parallel.
+ */
+public class InsertionHeuristics {
+
+    private InsertionHeuristics() {}
+
+    /**
+     * Insert the tasks one by one, always the one with the cheapest insertion first.
+     *
+     * @return The number of best insertions of a task in a vehicle that were evaluated
+     */
+    public static long greedyInsert(Solution solution, List<Pair<VarTask, VarTask>> pairs, List<VarVehicle> vehicles) {
+        return regretInsert(solution, pairs, vehicles, 1);
+    }
+
+    /**
+     * Regret-k insertion: insert first the task that would lose the most if its best vehicle was not
+     * available, measured as the sum of the differences between its k best vehicles and its best one.
+     * Ties go to the cheapest insertion (and then to the first task of the list). With k = 1 it is the greedy insertion.
+     *
+     * @return The number of best insertions of a task in a vehicle that were evaluated
+     * @throws AssertionError If a task does not fit in any vehicle
+     */
+    public static long regretInsert(Solution solution, List<Pair<VarTask, VarTask>> pairs, List<VarVehicle> vehicles, int k) {
+        int numTasks = pairs.size();
+        int numVehicles = vehicles.size();
+        // The best insertion of each task in each vehicle, by vehicle index
+        Insertion[][] insertions = new Insertion[numTasks][numVehicles];
+        boolean[] inserted = new boolean[numTasks];
+        long evaluated = (long) numTasks * numVehicles;
+
+        // Every vehicle is independent, so the columns are computed in parallel
+        vehicles.parallelStream().forEach(vehicle -> {
+            for (int tIdx = 0; tIdx < numTasks; tIdx++) {
+                insertions[tIdx][vehicle.index()] = solution.findBestInsertion(vehicle, pairs.get(tIdx));
+            }
+        });
+
+        double[] costs = new double[numVehicles];
+        for (int step = 0; step < numTasks; step++) {
+            int chosen = -1;
+            double chosenRegret = -1;
+            Insertion chosenInsertion = null;
+
+            for (int tIdx = 0; tIdx < numTasks; tIdx++) {
+                if (inserted[tIdx]) continue;
+
+                // The cost of the task in each vehicle (infinite if it does not fit)
+                Insertion best = null;
+                for (int vIdx = 0; vIdx < numVehicles; vIdx++) {
+                    Insertion insertion = insertions[tIdx][vIdx];
+                    costs[vIdx] = insertion == null ? Double.POSITIVE_INFINITY : insertion.costDelta();
+                    if (insertion != null && (best == null || insertion.costDelta() < best.costDelta())) {
+                        best = insertion;
+                    }
+                }
+                if (best == null) {
+                    throw new AssertionError("The problem is unsolvable. No vehicle can carry: " + pairs.get(tIdx).getLeft());
+                }
+
+                double regret = regret(costs, k);
+                if (chosenInsertion == null || regret > chosenRegret
+                        || (regret == chosenRegret && best.costDelta() < chosenInsertion.costDelta())) {
+                    chosen = tIdx;
+                    chosenRegret = regret;
+                    chosenInsertion = best;
+                }
+            }
+
+            // Insert the chosen task
+            Pair<VarTask, VarTask> pair = pairs.get(chosen);
+            VarVehicle vehicle = chosenInsertion.vehicle();
+            solution.addTaskAndSupplementaryAt(vehicle, pair, chosenInsertion.pickUpIdx(), chosenInsertion.deliveryIdx());
+            solution.updateTaskVehicle(pair.getLeft(), vehicle);
+            solution.updateTaskVehicle(pair.getRight(), vehicle);
+            inserted[chosen] = true;
+
+            // Only the route of the vehicle changed, so only its column is computed again
+            int vIdx = vehicle.index();
+            IntStream.range(0, numTasks).parallel().filter(tIdx -> !inserted[tIdx]).forEach(tIdx ->
+                insertions[tIdx][vIdx] = solution.findBestInsertion(vehicle, pairs.get(tIdx)));
+            evaluated += numTasks - step - 1;
+        }
+        return evaluated;
+    }
+
+    // The sum of the differences between the k best costs and the best one. Missing vehicles count as a big regret.
+    private static double regret(double[] costs, int k) {
+        if (k <= 1) {
+            return 0D;
+        }
+        double[] sorted = Arrays.copyOf(costs, costs.length);
+        Arrays.sort(sorted);
+        double regret = 0D;
+        for (int idx = 1; idx < Math.min(k, sorted.length); idx++) {
+            regret += (sorted[idx] == Double.POSITIVE_INFINITY) ? Double.MAX_VALUE / k : sorted[idx] - sorted[0];
+        }
+        return regret;
+    }
+}
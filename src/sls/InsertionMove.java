@@ -0,0 +1,64 @@
+package sls;
+
+import model.Insertion;
+import model.Solution;
+import model.VarTask;
+import model.VarVehicle;
+import utils.Pair;
+
+/**
+ * Moves the first task of vehicle v1 (along with its supplementary task) to the cheapest feasible
+ * positions of the route of vehicle v2, instead of the front like {@link RelocateMove}.
+ *
+ * The positions are searched once, by {@link #isFeasible}, and reused by the other methods,
+ * so the move must be checked before it is scored or applied.
+ */
+public class InsertionMove extends Move {
+
+    private final VarVehicle v1;
+    private final VarVehicle v2;
+    private final int nearest;  // Only insert after one of the nearest cities (0 for anywhere)
+    private Insertion insertion = null;  // The best insertion in v2 (null if the task does not fit)
+
+    public InsertionMove(VarVehicle v1, VarVehicle v2) {
+        this(v1, v2, 0);
+    }
+
+    public InsertionMove(VarVehicle v1, VarVehicle v2, int nearest) {
+        this.v1 = v1;
+        this.v2 = v2;
+        this.nearest = nearest;
+    }
+
+    @Override
+    public boolean isFeasible(Solution solution) {
+        insertion = solution.findBestInsertion(v2, solution.getTaskAndSupplementaryAt(v1, 0), nearest);
+        return insertion != null;
+    }
+
+    @Override
+    public double costDelta(Solution solution) {
+        return solution.removeCostDelta(v1, 0) + insertion.costDelta();
+    }
+
+    @Override
+    public void apply(Solution solution) {
+        // Get the first task of vehicle v1 and its supplementary task.
+        Pair<VarTask, VarTask> taskPair = solution.getTaskAndSupplementaryAt(v1, 0);
+
+        // Remove the first task and its supplementary
+        solution.removeTaskAndSupplementaryAt(v1, taskPair, 0);
+
+        // Insert them at the best positions of vehicle v2
+        solution.addTaskAndSupplementaryAt(v2, taskPair, insertion.pickUpIdx(), insertion.deliveryIdx());
+
+        // Update the vehicles of the tasks
+        solution.updateTaskVehicle(taskPair.getLeft(), v2);
+        solution.updateTaskVehicle(taskPair.getRight(), v2);
+    }
+
+    @Override
+    public String toString() {
+        return "Insertion {" + v1 + " -> " + v2 + " at " + insertion + "}";
+    }
+}
@@ -0,0 +1,36 @@
+package sls;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Late acceptance hill climbing: a candidate is accepted if it is not worse than the current solution
+ * or than the solution that was current historyLength iterations ago.
+ */
+public class LateAcceptance implements AcceptanceStrategy {
+
+    private double[] history;  // The cost of the current solution of the last historyLength iterations
+    private int iteration;
+
+    public LateAcceptance(int historyLength) {
+        this.history = new double[historyLength];
+    }
+
+    @Override
+    public void reset(double initialCost) {
+        Arrays.fill(history, initialCost);
+        iteration = 0;
+    }
+
+    @Override
+    public boolean accept(double currentCost, double candidateCost, double progress, SplittableRandom randGen) {
+        int slot = iteration % history.length;
+        boolean accepted = candidateCost <= currentCost || candidateCost <= history[slot];
+
+        // Remember the cost we end up with in this iteration
+        history[slot] = accepted ? candidateCost : currentCost;
+        iteration++;
+
+        return accepted;
+    }
+}
@@ -0,0 +1,36 @@
+package sls;
+
+import model.Solution;
+
+/**
+ * A neighbor of a solution, described by the operation that creates it instead of a copy of the solution.
+ *
+ * Moves are checked and scored against the current solution and only the chosen one gets applied.
+ */
+public abstract class Move {
+
+    /**
+     * @return True if applying the move on the solution satisfies all the constraints
+     */
+    public abstract boolean isFeasible(Solution solution);
+
+    /**
+     * @return The change in cost if the move was applied on the solution
+     */
+    public abstract double costDelta(Solution solution);
+
+    /**
+     * Applies the move on the solution (in place).
+     */
+    public abstract void apply(Solution solution);
+
+    /**
+     * @return The fingerprint of the solution after the move. By default the move is applied on a copy,
+     * moves that can tell it without applying (e.g. swaps) should override it.
+     */
+    public long fingerprintAfter(Solution solution) {
+        Solution copy = new Solution(solution);
+        apply(copy);
+        return copy.fingerprint();
+    }
+}
@@ -0,0 +1,42 @@
+package sls;
+
+import model.Solution;
+import model.VarVehicle;
+
+/**
+ * Moves a segment of consecutive tasks of the route of a vehicle before the task at index to (Or-opt).
+ */
+public class OrOptMove extends Move {
+
+    private final VarVehicle v;
+    private final int from;
+    private final int length;
+    private final int to;
+
+    public OrOptMove(VarVehicle v, int from, int length, int to) {
+        this.v = v;
+        this.from = from;
+        this.length = length;
+        this.to = to;
+    }
+
+    @Override
+    public boolean isFeasible(Solution solution) {
+        return solution.checkSegmentMove(v, from, length, to);
+    }
+
+    @Override
+    public double costDelta(Solution solution) {
+        return solution.segmentMoveCostDelta(v, from, length, to);
+    }
+
+    @Override
+    public void apply(Solution solution) {
+        solution.moveSegment(v, from, length, to);
+    }
+
+    @Override
+    public String toString() {
+        return "OrOpt {" + v + ": [" + from + ", " + (from + length) + ") -> " + to + "}";
+    }
+}
@@ -0,0 +1,55 @@
+package sls;
+
+import model.Solution;
+import model.VarTask;
+import model.VarVehicle;
+import utils.Pair;
+
+/**
+ * Moves the first task of vehicle v1 (along with its supplementary task) to the front of vehicle v2.
+ */
+public class RelocateMove extends Move {
+
+    private final VarVehicle v1;
+    private final VarVehicle v2;
+
+    public RelocateMove(VarVehicle v1, VarVehicle v2) {
+        this.v1 = v1;
+        this.v2 = v2;
+    }
+
+    /**
+     * The pickUp and the delivery end up back-to-back at the front of v2, so the rest of its
+     * route keeps its loads and only the weight of the task has to fit.
+     */
+    @Override
+    public boolean isFeasible(Solution solution) {
+        return solution.getTask(v1, 0).weight() <= v2.capacity();
+    }
+
+    @Override
+    public double costDelta(Solution solution) {
+        return solution.removeCostDelta(v1, 0) + solution.addCostDelta(v2, solution.getTaskAndSupplementaryAt(v1, 0), 0);
+    }
+
+    @Override
+    public void apply(Solution solution) {
+        // Get the first task of vehicle v1 and its supplementary task.
+        Pair<VarTask, VarTask> taskPair = solution.getTaskAndSupplementaryAt(v1, 0);
+
+        // Remove the first task and its supplementary
+        solution.removeTaskAndSupplementaryAt(v1, taskPair, 0);
+
+        // Insert the pickUp as the first task of vehicle v2 and the delivery as the second.
+        solution.addTaskAndSupplementaryAt(v2, taskPair, 0);
+
+        // Update the vehicles of the tasks
+        solution.updateTaskVehicle(taskPair.getLeft(), v2);
+        solution.updateTaskVehicle(taskPair.getRight(), v2);
+    }
+
+    @Override
+    public String toString() {
+        return "Relocate {" + v1 + " -> " + v2 + "}";
+    }
+}
@@ -0,0 +1,276 @@
+package sls;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters of the local search: iterations, neighbors generated/feasible per operator, time spent
+ * generating and scoring neighbors (CPU time of the search threads, or wall-clock time when the neighbors
+ * are generated in parallel), allocated bytes and the best cost over time. The large neighborhood search
+ * records the uses of its destroy and repair operators, the tasks it removes and the insertions it evaluates.
+ *
+ * The counters are adders, so all the trajectories of a multi-start search can share one instance.
+ * It can be registered as an MBean and the best cost curve can be dumped to a CSV file.
+ */
+public class SearchMetrics implements SearchMetricsMBean {
+
+    public static final String OBJECT_NAME = "sls:type=SearchMetrics";
+
+    private final LongAdder iterations = new LongAdder();
+    private final LongAdder relocationsGenerated = new LongAdder();
+    private final LongAdder relocationsFeasible = new LongAdder();
+    private final LongAdder swapsGenerated = new LongAdder();
+    private final LongAdder swapsFeasible = new LongAdder();
+    private final LongAdder orOptsGenerated = new LongAdder();
+    private final LongAdder orOptsFeasible = new LongAdder();
+    private final LongAdder twoOptsGenerated = new LongAdder();
+    private final LongAdder twoOptsFeasible = new LongAdder();
+    private final Map<String, LongAdder> operatorUses = new ConcurrentHashMap<>();  // The uses of each destroy and repair operator
+    private final LongAdder tasksRemoved = new LongAdder();
+    private final LongAdder insertionsEvaluated = new LongAdder();
+    private final DoubleAdder generationCpuSeconds = new DoubleAdder();
+    private final DoubleAdder scoringCpuSeconds = new DoubleAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final LongAdder measuredIterations = new LongAdder();  // The iterations of the trajectories with known allocations
+
+    private volatile long startTime = System.currentTimeMillis();
+    private volatile double bestCost = Double.MAX_VALUE;
+    private final List<double[]> bestCostCurve = new ArrayList<>();  // {elapsed ms, iterations, best cost} on every improvement
+
+    /**
+     * Register the metrics to the platform MBean server (replacing any previous instance).
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        }
+        catch (Exception exc) {
+            System.out.println("There was a problem registering the search metrics: " + exc);
+        }
+    }
+
+    @Override
+    public synchronized void reset() {
+        iterations.reset();
+        relocationsGenerated.reset();
+        relocationsFeasible.reset();
+        swapsGenerated.reset();
+        swapsFeasible.reset();
+        orOptsGenerated.reset();
+        orOptsFeasible.reset();
+        twoOptsGenerated.reset();
+        twoOptsFeasible.reset();
+        operatorUses.clear();
+        tasksRemoved.reset();
+        insertionsEvaluated.reset();
+        generationCpuSeconds.reset();
+        scoringCpuSeconds.reset();
+        allocatedBytes.reset();
+        measuredIterations.reset();
+        bestCostCurve.clear();
+        bestCost = Double.MAX_VALUE;
+        startTime = System.currentTimeMillis();
+    }
+
+    // Recorders used by the search.
+    void addIteration(double generationSeconds, double scoringSeconds) {
+        iterations.increment();
+        generationCpuSeconds.add(generationSeconds);
+        scoringCpuSeconds.add(scoringSeconds);
+    }
+
+    void addNeighbors(long relocations, long feasibleRelocations, long swaps, long feasibleSwaps) {
+        relocationsGenerated.add(relocations);
+        relocationsFeasible.add(feasibleRelocations);
+        swapsGenerated.add(swaps);
+        swapsFeasible.add(feasibleSwaps);
+    }
+
+    void addIntraRouteNeighbors(long orOpts, long feasibleOrOpts, long twoOpts, long feasibleTwoOpts) {
+        orOptsGenerated.add(orOpts);
+        orOptsFeasible.add(feasibleOrOpts);
+        twoOptsGenerated.add(twoOpts);
+        twoOptsFeasible.add(feasibleTwoOpts);
+    }
+
+    void addRuinAndRecreate(String destroy, String repair, long removed, long insertions) {
+        operatorUses.computeIfAbsent(destroy, operator -> new LongAdder()).increment();
+        operatorUses.computeIfAbsent(repair, operator -> new LongAdder()).increment();
+        tasksRemoved.add(removed);
+        insertionsEvaluated.add(insertions);
+    }
+
+    void addAllocation(long bytes, long trajectoryIterations) {
+        if (bytes >= 0) {
+            allocatedBytes.add(bytes);
+            measuredIterations.add(trajectoryIterations);
+        }
+    }
+
+    void updateBestCost(double cost) {
+        if (cost < bestCost) {
+            synchronized (this) {
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestCostCurve.add(new double[] {getElapsedMillis(), iterations.sum(), cost});
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The bytes allocated so far by the current thread, or -1 if the JVM cannot tell
+     */
+    static long currentThreadAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Write the best cost over time to a CSV file (elapsed_ms,iterations,best_cost)
+     */
+    public synchronized void writeCsv(String path) {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(path))) {
+            writer.println("elapsed_ms,iterations,best_cost");
+            for (double[] point: bestCostCurve) {
+                writer.println((long) point[0] + "," + (long) point[1] + "," + point[2]);
+            }
+        }
+        catch (IOException exc) {
+            System.out.println("There was a problem writing the search metrics to " + path + ": " + exc);
+        }
+    }
+
+    public synchronized List<double[]> getBestCostCurve() {
+        return new ArrayList<>(bestCostCurve);
+    }
+
+    // Getters (MBean attributes).
+    @Override
+    public long getIterations() {
+        return iterations.sum();
+    }
+
+    @Override
+    public double getIterationsPerSecond() {
+        return getIterations() / Math.max(1D, getElapsedMillis()) * 1000D;
+    }
+
+    @Override
+    public long getRelocationsGenerated() {
+        return relocationsGenerated.sum();
+    }
+
+    @Override
+    public long getRelocationsFeasible() {
+        return relocationsFeasible.sum();
+    }
+
+    @Override
+    public long getSwapsGenerated() {
+        return swapsGenerated.sum();
+    }
+
+    @Override
+    public long getSwapsFeasible() {
+        return swapsFeasible.sum();
+    }
+
+    @Override
+    public long getOrOptsGenerated() {
+        return orOptsGenerated.sum();
+    }
+
+    @Override
+    public long getOrOptsFeasible() {
+        return orOptsFeasible.sum();
+    }
+
+    @Override
+    public long getTwoOptsGenerated() {
+        return twoOptsGenerated.sum();
+    }
+
+    @Override
+    public long getTwoOptsFeasible() {
+        return twoOptsFeasible.sum();
+    }
+
+    @Override
+    public Map<String, Long> getOperatorUses() {
+        Map<String, Long> uses = new TreeMap<>();
+        operatorUses.forEach((operator, count) -> uses.put(operator, count.sum()));
+        return uses;
+    }
+
+    @Override
+    public long getTasksRemoved() {
+        return tasksRemoved.sum();
+    }
+
+    @Override
+    public long getInsertionsEvaluated() {
+        return insertionsEvaluated.sum();
+    }
+
+    @Override
+    public double getGenerationCpuSeconds() {
+        return generationCpuSeconds.sum();
+    }
+
+    @Override
+    public double getScoringCpuSeconds() {
+        return scoringCpuSeconds.sum();
+    }
+
+    @Override
+    public double getBytesAllocatedPerIteration() {
+        return (double) allocatedBytes.sum() / Math.max(1L, measuredIterations.sum());
+    }
+
+    @Override
+    public double getBestCost() {
+        return bestCost;
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[INF] Search metrics: %d iterations (%.1f/s), relocations %d/%d, swaps %d/%d, "
+                + "or-opts %d/%d, 2-opts %d/%d feasible, generation %.3fs scoring %.3fs, %.0f B/iteration",
+                getIterations(), getIterationsPerSecond(), getRelocationsFeasible(), getRelocationsGenerated(),
+                getSwapsFeasible(), getSwapsGenerated(), getOrOptsFeasible(), getOrOptsGenerated(),
+                getTwoOptsFeasible(), getTwoOptsGenerated(), getGenerationCpuSeconds(), getScoringCpuSeconds(),
+                getBytesAllocatedPerIteration())
+                + (operatorUses.isEmpty() ? "" : String.format(", operators %s, %d tasks removed, %d insertions evaluated",
+                        getOperatorUses(), getTasksRemoved(), getInsertionsEvaluated()));
+    }
+}
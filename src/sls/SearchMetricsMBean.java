@@ -0,0 +1,47 @@
+package sls;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link SearchMetrics} of the local search.
+ */
+public interface SearchMetricsMBean {
+
+    long getIterations();
+
+    double getIterationsPerSecond();
+
+    long getRelocationsGenerated();
+
+    long getRelocationsFeasible();
+
+    long getSwapsGenerated();
+
+    long getSwapsFeasible();
+
+    long getOrOptsGenerated();
+
+    long getOrOptsFeasible();
+
+    long getTwoOptsGenerated();
+
+    long getTwoOptsFeasible();
+
+    Map<String, Long> getOperatorUses();
+
+    long getTasksRemoved();
+
+    long getInsertionsEvaluated();
+
+    double getGenerationCpuSeconds();
+
+    double getScoringCpuSeconds();
+
+    double getBytesAllocatedPerIteration();
+
+    double getBestCost();
+
+    long getElapsedMillis();
+
+    void reset();
+}
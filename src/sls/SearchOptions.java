@@ -0,0 +1,111 @@
+package sls;
+
+import java.util.function.Supplier;
+
+/**
+ * The options of the stochastic local search that are set from the command line (-Dsls.<option>=<value>),
+ * so that the agent and the batch runner build the same search. Every option is off unless asked.
+ *
+ *   -Dsls.threads=<n>              The number of trajectories (1 by default)
+ *   -Dsls.bestInsertion=true       Relocate tasks at their best positions
+ *   -Dsls.initializer=Max|Regret   The initial solution (Shortest by default)
+ *   -Dsls.warmStart=true           Start each run from the previous solution
+ *   -Dsls.parallelNeighbors=true   Generate and score the neighbors on parallel streams
+ *   -Dsls.acceptance=sa|lahc|ta    Simulated annealing, late acceptance or threshold accepting instead of the default choice
+ *   -Dsls.tabuTenure=<n>           A tabu search over the last n solutions (0 by default)
+ *   -Dsls.intraRoute=true          Also generate Or-opt and 2-opt moves in the chosen route
+ *   -Dsls.nearestNeighbors=<k>     Only moves that put a task after one of its k nearest cities (0, all the moves, by default)
+ */
+public class SearchOptions {
+
+    private static final double ANNEALING_INITIAL_RATIO = 0.01;  // The initial temperature as a fraction of the initial cost
+    private static final double ANNEALING_FINAL_RATIO = 0.0001;  // The final temperature as a fraction of the initial cost
+    private static final int LATE_ACCEPTANCE_HISTORY = 200;
+    private static final double THRESHOLD_INITIAL_RATIO = 0.01;  // The initial threshold as a fraction of the initial cost
+
+    private int threads = 1;
+    private boolean bestInsertion = false;
+    private StochasticLocalSearch.Initializer initializer = StochasticLocalSearch.Initializer.Shortest;
+    private boolean warmStart = false;
+    private boolean parallelNeighbors = false;
+    private String acceptance = "default";
+    private int tabuTenure = 0;
+    private boolean intraRoute = false;
+    private int nearestNeighbors = 0;
+
+    /**
+     * @return The options given by the system properties
+     * @throws IllegalArgumentException If a value is not valid
+     */
+    public static SearchOptions fromSystemProperties() {
+        SearchOptions options = new SearchOptions();
+        options.threads = Integer.getInteger("sls.threads", 1);
+        options.bestInsertion = Boolean.getBoolean("sls.bestInsertion");
+        options.initializer = StochasticLocalSearch.Initializer.valueOf(System.getProperty("sls.initializer", "Shortest"));
+        options.warmStart = Boolean.getBoolean("sls.warmStart");
+        options.parallelNeighbors = Boolean.getBoolean("sls.parallelNeighbors");
+        options.setAcceptance(System.getProperty("sls.acceptance", "default"));
+        options.tabuTenure = Integer.getInteger("sls.tabuTenure", 0);
+        options.intraRoute = Boolean.getBoolean("sls.intraRoute");
+        options.nearestNeighbors = Integer.getInteger("sls.nearestNeighbors", 0);
+        return options;
+    }
+
+    /**
+     * Set the options on a search
+     */
+    public void applyTo(StochasticLocalSearch sls) {
+        sls.setThreads(threads);
+        sls.setBestInsertion(bestInsertion);
+        sls.setInitializer(initializer);
+        sls.setWarmStart(warmStart);
+        sls.setParallelNeighbors(parallelNeighbors);
+        sls.setAcceptanceStrategy(acceptanceStrategy(acceptance));
+        sls.setTabuTenure(tabuTenure);
+        sls.setIntraRouteMoves(intraRoute);
+        sls.setNearestNeighbors(nearestNeighbors);
+    }
+
+    // The supplier of the acceptance strategy of each trajectory (null for the default choice)
+    private static Supplier<AcceptanceStrategy> acceptanceStrategy(String acceptance) {
+        switch (acceptance) {
+            case "default":
+                return null;
+            case "sa":
+                return () -> new SimulatedAnnealing(ANNEALING_INITIAL_RATIO, ANNEALING_FINAL_RATIO);
+            case "lahc":
+                return () -> new LateAcceptance(LATE_ACCEPTANCE_HISTORY);
+            case "ta":
+                return () -> new ThresholdAccepting(THRESHOLD_INITIAL_RATIO);
+            default:
+                throw new IllegalArgumentException("Unknown acceptance strategy: " + acceptance);
+        }
+    }
+
+    // Getters and Setters.
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public String getAcceptance() {
+        return acceptance;
+    }
+
+    /**
+     * @param acceptance default, sa, lahc or ta
+     * @throws IllegalArgumentException If the strategy is unknown
+     */
+    public void setAcceptance(String acceptance) {
+        acceptanceStrategy(acceptance);
+        this.acceptance = acceptance;
+    }
+
+    @Override
+    public String toString() {
+        return "threads=" + threads + " bestInsertion=" + bestInsertion + " initializer=" + initializer
+                + " warmStart=" + warmStart + " parallelNeighbors=" + parallelNeighbors
+                + " acceptance=" + acceptance + " tabuTenure=" + tabuTenure
+                + " intraRoute=" + intraRoute + " nearestNeighbors=" + nearestNeighbors;
+    }
+}
@@ -0,0 +1,45 @@
+package sls;
+
+import java.util.SplittableRandom;
+
+/**
+ * Simulated annealing: a worse candidate is accepted with probability exp(-(candidate - current) / T).
+ *
+ * The temperature cools geometrically with the progress of the search, from initialRatio * initialCost
+ * at the start down to finalRatio * initialCost when the time (or iteration) budget runs out.
+ * Tying the schedule to the progress makes the search end cold no matter how long the timeout is.
+ */
+public class SimulatedAnnealing implements AcceptanceStrategy {
+
+    private double initialRatio;  // The initial temperature as a fraction of the initial cost
+    private double finalRatio;    // The final temperature as a fraction of the initial cost
+    private double initialTemperature;
+    private double finalTemperature;
+
+    public SimulatedAnnealing(double initialRatio, double finalRatio) {
+        this.initialRatio = initialRatio;
+        this.finalRatio = finalRatio;
+    }
+
+    @Override
+    public void reset(double initialCost) {
+        this.initialTemperature = initialRatio * initialCost;
+        this.finalTemperature = finalRatio * initialCost;
+    }
+
+    @Override
+    public boolean accept(double currentCost, double candidateCost, double progress, SplittableRandom randGen) {
+        if (candidateCost <= currentCost) {
+            return true;
+        }
+
+        return randGen.nextDouble() < Math.exp(-(candidateCost - currentCost) / temperature(progress));
+    }
+
+    /**
+     * @return The temperature T0 * (Tf / T0)^progress
+     */
+    public double temperature(double progress) {
+        return initialTemperature * Math.pow(finalTemperature / initialTemperature, progress);
+    }
+}
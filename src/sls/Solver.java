@@ -0,0 +1,29 @@
+package sls;
+
+import java.util.List;
+
+import logist.plan.Plan;
+import logist.task.TaskSet;
+import model.Solution;
+import model.VarVehicle;
+
+/**
+ * A search that creates the plans of the vehicles for a set of tasks.
+ */
+public interface Solver {
+
+    /**
+     * @return The plan of each vehicle, in the order of the list of vehicles
+     */
+    List<Plan> apply(List<VarVehicle> vehicles, TaskSet tasks);
+
+    /**
+     * Stop the current search. It terminates at its next iteration.
+     */
+    void stop();
+
+    /**
+     * @return The best solution found so far by the current (or last) search, or null if there is none yet
+     */
+    Solution getBestSoFar();
+}
@@ -3,120 +3,809 @@ package sls;
 import logist.plan.Plan;
 import logist.task.Task;
 import logist.task.TaskSet;
+import logist.topology.Topology.City;
 import model.VarVehicle;
 import model.VarTask.Type;
+import model.ArraySolution;
 import model.Solution;
+import model.SolutionCheckpoint;
 import model.VarTask;
-import utils.OrderedList;
 import utils.Pair;
-import utils.OrderedList.OrderType;
+import utils.Timer;
+import utils.TopologyCache;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-public class StochasticLocalSearch {
+public class StochasticLocalSearch implements Solver {
+
+    public enum Initializer {Shortest, Max, Regret};
+
+    private static final long SHUTDOWN_TIME = 500;  // The time (ms) kept to shutdown before the timeout
+    private static final int WARM_START_MIN_ITERATIONS = 200;  // The least iterations of a warm started run
+    private static final long CHECKPOINT_PERIOD = 200;  // The least time (ms) between two checkpoints of a run
 
     private Double choiceProbability;
     private int iterations;
+    private int runIterations;  // The iterations of the current run (fewer after a warm start)
     private long timeout;  // The time that the algorithm has available
-    OrderedList<Pair<Solution, Integer>, Double> bestSolutions;
+    private TopologyCache topologyCache;  // The precomputed distances of the topology
+    private int threads = 1;  // The number of independent trajectories (multi-start if > 1)
+    private long seed = 1;    // The base seed of the random generators
+    private boolean parallelNeighbors = false;  // Generate and score the neighbors concurrently
+    private Initializer initializer = Initializer.Shortest;  // How the initial solution (of the first trajectory) is created
+    private int regretK = 3;  // The k of the regret-k initializer
+    private boolean intraRouteMoves = false;  // Also generate Or-opt and 2-opt moves in the route of the chosen vehicle
+    private boolean warmStart = false;  // Start from the last solution, repaired for the new tasks
+    private volatile Solution lastSolution = null;  // The best solution of the last run
+    private boolean bestInsertion = false;  // Relocate tasks at their best positions instead of the front of the route
+    private boolean allocationFree = false;  // Run the default search in place on an ArraySolution
+    private int nearestNeighbors = 0;  // Only moves that put a task after one of its k nearest cities (0 for all the moves)
+    private int tabuTenure = 0;  // The number of recent solutions that are tabu (0 to disable the tabu search)
+    private Supplier<AcceptanceStrategy> acceptance = null;  // Creates the acceptance strategy of each trajectory (null for the default choice)
+    private SearchMetrics metrics = null;  // Telemetry of the search (null to disable it)
+    private SolutionCheckpoint checkpoint = null;  // Where the improvements are saved (null to disable it)
+    private static final int ELITES = 5;  // The number of best solutions kept by each trajectory
+    EliteArchive<Solution> bestSolutions;
+
+    // Every apply (and every stop) starts a new run. Trajectories of an older run terminate and cannot publish.
+    private final AtomicLong run = new AtomicLong();
+    private volatile Pair<Solution, Double> incumbent = null;  // The best solution of the current run so far
+    private List<VarVehicle> incumbentVehicles = null;  // The vehicles of the current run (to checkpoint the incumbent)
+    private long lastCheckpoint = 0;  // When the incumbent was last checkpointed
 
-    public StochasticLocalSearch(double choiceProbability, int iterations, long timeout) {
-        this.bestSolutions = new OrderedList<>(5, OrderType.Acceding);
+    public StochasticLocalSearch(double choiceProbability, int iterations, long timeout, TopologyCache topologyCache) {
+        this.topologyCache = topologyCache;
+        this.bestSolutions = new EliteArchive<>(ELITES);
         this.choiceProbability = choiceProbability;
         this.iterations = iterations;
         this.timeout = timeout;
     }
 
+    // Getters and Setters.
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setParallelNeighbors(boolean parallelNeighbors) {
+        this.parallelNeighbors = parallelNeighbors;
+    }
+
+    public void setInitializer(Initializer initializer) {
+        this.initializer = initializer;
+    }
+
+    public void setRegretK(int regretK) {
+        this.regretK = regretK;
+    }
+
+    /**
+     * Turn the search into a tabu search: each step goes to the best neighbor that is not one of the last
+     * tabuTenure solutions (unless it beats the best solution), even if it is worse. 0 disables it.
+     * An acceptance strategy, if set, takes precedence.
+     */
+    public void setTabuTenure(int tabuTenure) {
+        this.tabuTenure = tabuTenure;
+    }
+
+    public void setIntraRouteMoves(boolean intraRouteMoves) {
+        this.intraRouteMoves = intraRouteMoves;
+    }
+
+    /**
+     * Start each run (after the first) from the best solution of the previous run: the tasks that are gone
+     * are removed, the new ones are inserted at their cheapest positions, and the iterations are scaled
+     * down to the fraction of the tasks that changed.
+     */
+    public void setWarmStart(boolean warmStart) {
+        this.warmStart = warmStart;
+    }
+
+    public void setBestInsertion(boolean bestInsertion) {
+        this.bestInsertion = bestInsertion;
+    }
+
+    /**
+     * Run the default search (relocations to the front and swaps, best neighbor with probability p,
+     * otherwise a random one) in place on an {@link ArraySolution}: the moves are encoded in a reused long[],
+     * their scores in a reused double[], the chosen move is applied to the current solution and the best one
+     * is copied into a second solution. Once the buffers have grown, an iteration allocates nothing, except
+     * when it finds a new best solution to publish. Only the best solution of each trajectory is kept.
+     * It does not apply with an acceptance strategy, the tabu search, the intra-route moves or the best insertion.
+     */
+    public void setAllocationFree(boolean allocationFree) {
+        this.allocationFree = allocationFree;
+    }
+
+    /**
+     * Restrict the neighborhood to candidate lists: the swaps, the Or-opt and 2-opt moves and the best insertions
+     * only put a task right after one of the k nearest cities of its city. Most of the quadratic neighborhood
+     * is skipped before any move is created or checked. 0 disables it.
+     */
+    public void setNearestNeighbors(int nearestNeighbors) {
+        this.nearestNeighbors = nearestNeighbors;
+    }
+
+    /**
+     * Record the telemetry of the search into metrics (reset on every apply). Null disables it.
+     */
+    public void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Append the improvements of the incumbent to a checkpoint, at most one every CHECKPOINT_PERIOD ms since each
+     * append forces the file to the disk, and the final best when the run ends or is stopped. The first run resumes
+     * from the solution of the checkpoint (repaired like a warm start) if there is one, then every run clears it.
+     * Null disables it.
+     */
+    public void setCheckpoint(SolutionCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Replace the default choice (best neighbor with probability p, otherwise a random one) with an
+     * {@link AcceptanceStrategy}. The supplier is called once per trajectory.
+     */
+    public void setAcceptanceStrategy(Supplier<AcceptanceStrategy> acceptance) {
+        this.acceptance = acceptance;
+    }
+
+    /**
+     * Stop the current run. Its trajectories stop creating and scoring neighbors at once and terminate.
+     */
+    @Override
+    public void stop() {
+        run.incrementAndGet();  // First, so that the trajectories stop at once
+        flushCheckpoint();
+    }
+
+    /**
+     * @return The best solution found so far by the current (or last) run, or null if there is none yet.
+     * Published solutions are never modified afterwards, so they can be read from any thread.
+     */
+    @Override
+    public Solution getBestSoFar() {
+        Pair<Solution, Double> best = incumbent;
+        return best == null ? null : best.getLeft();
+    }
+
+    // Publish a solution as the incumbent if it belongs to the current run and improves it (and checkpoint it)
+    private synchronized void publish(long runId, Solution solution, double cost, List<VarVehicle> vehicles) {
+        if (runId == run.get() && (incumbent == null || cost < incumbent.getRight())) {
+            incumbent = new Pair<>(solution, cost);
+            incumbentVehicles = vehicles;
+            if (checkpoint != null && System.currentTimeMillis() - lastCheckpoint >= CHECKPOINT_PERIOD) {
+                flushCheckpoint();
+            }
+        }
+    }
+
+    // Append the incumbent to the checkpoint (it is ignored if it does not improve on the checkpointed one)
+    private synchronized void flushCheckpoint() {
+        Pair<Solution, Double> best = incumbent;
+        if (checkpoint != null && best != null) {
+            checkpoint.append(best.getLeft(), incumbentVehicles, best.getRight());
+            lastCheckpoint = System.currentTimeMillis();
+        }
+    }
+
     /**
      * Apply the stochastic local search
      */
+    @Override
     public List<Plan> apply(List<VarVehicle> vehicles, TaskSet tasks) {
         // Start measuring time
         long startTime = System.currentTimeMillis();
-        SplittableRandom randGen = new SplittableRandom(1);
+        SplittableRandom randGen = new SplittableRandom(seed);
+        long runId;
+        synchronized (this) {
+            runId = run.incrementAndGet();
+            incumbent = null;
+            lastCheckpoint = 0;
+        }
+        if (metrics != null) {
+            metrics.reset();
+        }
+
+        // Resume from the checkpoint of a run that did not finish, then checkpoint this run
+        boolean resumed = false;
+        if (checkpoint != null) {
+            Pair<Solution, Double> checkpointed = (lastSolution == null) ? checkpoint.load(vehicles, tasks, topologyCache) : null;
+            if (checkpointed != null) {
+                System.out.println("[INF] Resume from a checkpoint of cost: " + checkpointed.getRight());
+                lastSolution = checkpointed.getLeft();
+                resumed = true;
+            }
+            checkpoint.clear();
+        }
+
+        // Repair the last solution if we warm start
+        runIterations = iterations;
+        Solution warmSolution = null;
+        if ((warmStart || resumed) && lastSolution != null) {
+            Pair<Solution, Integer> warm = createWarmStartSolution(lastSolution, vehicles, tasks);
+            warmSolution = warm.getLeft();
+            double changed = (double) warm.getRight() / Math.max(1, tasks.size());
+            runIterations = (int) Math.max(Math.min(iterations, WARM_START_MIN_ITERATIONS), Math.ceil(iterations * Math.min(1D, changed)));
+            System.out.println("[INF] Warm start: " + warm.getRight() + " tasks changed, " + runIterations + " iterations");
+        }
 
-        // Create the initial solution
-        Solution solution = createShortestInitialSolution(vehicles, tasks);
-        // Solution solution = createMaxInitialSolution(vehicles, tasks);
-        System.out.println("[INF] Initial solution cost: " + solution.cost());
+        EliteArchive<Solution> runBest;
+        if (threads > 1) {
+            runBest = multiStart(vehicles, tasks, randGen, startTime, runId, warmSolution);
+        }
+        else {
+            // Create the initial solution
+            Solution solution = warmSolution != null ? warmSolution : createInitialSolution(0, vehicles, tasks, randGen);
+            System.out.println("[INF] Initial solution cost: " + solution.cost());
+
+            runBest = search(solution, vehicles, tasks, randGen, startTime, runId);
+        }
+
+        System.out.println("[INF] Best solution cost: " + runBest.bestScore() + " on iter: " + runBest.bestIteration());
+        runBest.best().printCost();
+        System.out.println("[INF] 2nd best solution cost: " + runBest.secondBestScore());
+
+        // A stopped run (e.g. by the watchdog) does not become the source of the next warm start
+        synchronized (this) {
+            if (runId == run.get()) {
+                bestSolutions = runBest;
+                lastSolution = runBest.best();
+                flushCheckpoint();
+            }
+        }
+        return runBest.best().toPlans(vehicles);
+    }
+
+    /**
+     * Run one trajectory of the local search from an initial solution until the termination condition.
+     *
+     * @return The best solutions found by the trajectory
+     */
+    private EliteArchive<Solution> search(Solution solution, List<VarVehicle> vehicles, TaskSet tasks,
+            SplittableRandom randGen, long startTime, long runId) {
+        if (allocationFree && acceptance == null && tabuTenure <= 0 && !intraRouteMoves && !bestInsertion) {
+            return searchInPlace(solution, vehicles, tasks, randGen, startTime, runId);
+        }
+
+        EliteArchive<Solution> trajectoryBest = new EliteArchive<>(ELITES);
+        double cost = solution.cost();
+        trajectoryBest.add(solution, cost, solution.fingerprint(), 0);
+        publish(runId, solution, cost, vehicles);
+
+        AcceptanceStrategy strategy = (acceptance == null) ? null : acceptance.get();
+        if (strategy != null) {
+            strategy.reset(cost);
+        }
+        TabuTable tabu = (tabuTenure > 0) ? new TabuTable(tabuTenure) : null;
+        if (tabu != null) {
+            tabu.add(solution.fingerprint());
+        }
+
+        // Telemetry (time of the generation and the scoring of the neighbors). The CPU time only covers the
+        // calling thread, so the parallel neighbors are measured in wall-clock time.
+        Timer.Type timerType = parallelNeighbors ? Timer.Type.WALL_CLOCK_TIME : Timer.Type.CPU_TIME;
+        Timer generationTimer = new Timer(timerType);
+        Timer scoringTimer = new Timer(timerType);
+        long allocatedBytes = 0;
+        if (metrics != null) {
+            metrics.updateBestCost(cost);
+            allocatedBytes = SearchMetrics.currentThreadAllocatedBytes();
+        }
 
         // Loop until solution good enough
         int iterCounter = 0;
         do {
-            List<Solution> neighbors = chooseNeighbors(solution, vehicles, randGen);
-            solution = localChoice(neighbors, solution, randGen, iterCounter);
+            if (metrics != null) {
+                generationTimer.start();
+            }
+            List<Move> neighbors = chooseNeighbors(solution, vehicles, randGen, runId);
+            if (metrics != null) {
+                scoringTimer.start();
+            }
+            Pair<Solution, Double> choice;
+            if (strategy == null && tabu != null) {
+                choice = tabuChoice(neighbors, solution, cost, iterCounter, trajectoryBest, tabu, runId);
+            }
+            else if (strategy == null) {
+                choice = localChoice(neighbors, solution, cost, randGen, iterCounter, trajectoryBest, runId);
+            }
+            else {
+                double progress = progress(System.currentTimeMillis() - startTime, iterCounter);
+                choice = acceptanceChoice(neighbors, solution, cost, randGen, iterCounter, trajectoryBest, strategy, progress, runId);
+            }
+            solution = choice.getLeft();
+            cost = choice.getRight();
             iterCounter++;
 
+            // Publish improvements for the watchdog
+            Pair<Solution, Double> best = incumbent;
+            if (best == null || cost < best.getRight()) {
+                publish(runId, solution, cost, vehicles);
+            }
+
+            if (metrics != null) {
+                // The generation timer runs over both phases, which saves reading the clock once more
+                double scoringSeconds = scoringTimer.stop();
+                metrics.addIteration(generationTimer.stop() - scoringSeconds, scoringSeconds);
+                metrics.updateBestCost(cost);
+            }
+
             // Get the elapsed time from the beginning
             long elapsedTime = System.currentTimeMillis() - startTime;
 
             // Check termination condition
-            if (terminationCondition(elapsedTime, iterCounter)) {
+            if (terminationCondition(elapsedTime, iterCounter, runId)) {
                 break;
             }
         } while (true);
 
 
-        System.out.println("[INF] Last solution cost: " + solution.cost());
-        System.out.println("[INF] Best solution cost: " + bestSolutions.peekScore() + " on iter: " + bestSolutions.getTop().getRight());
-        bestSolutions.getTop().getLeft().printCost();
-        System.out.println("[INF] 2nd best solution cost: " + bestSolutions.peek2ndScore());
-        return bestSolutions.getTop().getLeft().toPlans(vehicles);
+        if (metrics != null && allocatedBytes >= 0) {
+            metrics.addAllocation(SearchMetrics.currentThreadAllocatedBytes() - allocatedBytes, iterCounter);
+        }
+
+        System.out.println("[INF] Last solution cost: " + cost);
+        return trajectoryBest;
+    }
+
+    /**
+     * The search of {@link #search} with the default choice, but on an {@link ArraySolution} and without
+     * allocations in the steady state (see {@link #setAllocationFree}). The moves are generated in the same order,
+     * the random numbers are drawn in the same order and the costs are compared like {@link #localChoice}, so for
+     * a fixed seed it follows the same trajectory unless the two solutions round a cost delta differently.
+     *
+     * A move is a long: the high int is the first index of a swap, or -1 for a relocation of the first
+     * task of the chosen vehicle, and the low int is the second index of the swap, or the target vehicle.
+     *
+     * @return The best solution found by the trajectory (and the initial one)
+     */
+    private EliteArchive<Solution> searchInPlace(Solution solution, List<VarVehicle> vehicles, TaskSet tasks,
+            SplittableRandom randGen, long startTime, long runId) {
+        EliteArchive<Solution> trajectoryBest = new EliteArchive<>(ELITES);
+        double cost = solution.cost();
+        trajectoryBest.add(solution, cost, solution.fingerprint(), 0);
+        publish(runId, solution, cost, vehicles);
+
+        ArraySolution current = new ArraySolution(solution, vehicles, tasks);
+        ArraySolution best = new ArraySolution(current);
+        double bestCost = cost;
+        int bestIteration = 0;
+
+        // The buffers, they only grow
+        long[] moves = new long[64];
+        double[] deltas = new double[64];
+        int[] loads = new int[64];
+
+        // Telemetry, the CPU time is read directly since the timers box their results
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        boolean cpuTime = metrics != null && bean.isCurrentThreadCpuTimeSupported();
+        long allocatedBytes = 0;
+        if (metrics != null) {
+            metrics.updateBestCost(cost);
+            allocatedBytes = SearchMetrics.currentThreadAllocatedBytes();
+        }
+
+        int iterCounter = 0;
+        do {
+            long generationStart = cpuTime ? bean.getCurrentThreadCpuTime() : 0L;
+
+            // Get a random vehicle that holds a task
+            VarVehicle randVehicle;
+            do {
+                randVehicle = vehicles.get(randGen.nextInt(vehicles.size()));
+            } while (current.getTasksSize(randVehicle) == 0);
+            int size = current.getTasksSize(randVehicle);
+
+            int maxMoves = vehicles.size() - 1 + size * (size - 1) / 2;
+            if (moves.length < maxMoves) {
+                moves = new long[Math.max(maxMoves, 2 * moves.length)];
+                deltas = new double[moves.length];
+            }
+            if (loads.length < size) {
+                loads = new int[Math.max(size, 2 * loads.length)];
+            }
+
+            // Operation 1: relocations of the first task, back-to-back at the front of the other vehicles
+            int numMoves = 0;
+            int weight = current.getTask(current.getStop(randVehicle, 0)).weight;
+            for (VarVehicle vehicle: vehicles) {
+                if (vehicle != randVehicle && weight <= vehicle.capacity()) {
+                    moves[numMoves++] = move(-1, vehicle.index());
+                }
+            }
+            int relocations = numMoves;
+
+            // Operation 2: swaps. The loads in [t1Idx, t2Idx) change by the difference of the two stops.
+            current.fillLoads(randVehicle, loads);
+            for (int t1Idx = 0; t1Idx < size - 1 && !stopped(runId); t1Idx++) {
+                int t1Load = loads[t1Idx] - (t1Idx == 0 ? 0 : loads[t1Idx - 1]);
+                int maxLoad = Integer.MIN_VALUE;
+                for (int t2Idx = t1Idx + 1; t2Idx < size; t2Idx++) {
+                    maxLoad = Math.max(maxLoad, loads[t2Idx - 1]);
+                    int t2Load = loads[t2Idx] - loads[t2Idx - 1];
+                    if (current.checkPickUpDeliverOrder(randVehicle, t1Idx, t2Idx)
+                            && maxLoad + t2Load - t1Load <= randVehicle.capacity()) {
+                        moves[numMoves++] = move(t1Idx, t2Idx);
+                    }
+                }
+            }
+            if (metrics != null) {
+                metrics.addNeighbors(vehicles.size() - 1, relocations, size * (size - 1) / 2, numMoves - relocations);
+            }
+
+            long scoringStart = cpuTime ? bean.getCurrentThreadCpuTime() : 0L;
+            if (numMoves > 0) {
+                int chosen = -1;
+                double chosenCost = cost;
+
+                // With probability p the best neighbor (if it improves), otherwise a random one. The costs are
+                // compared like localChoice does (old cost + delta), so that rounding breaks the ties the same way.
+                if (randGen.nextDouble(1D) <= choiceProbability) {
+                    int scored = 0;
+                    for (; scored < numMoves && !stopped(runId); scored++) {
+                        deltas[scored] = costDelta(current, vehicles, randVehicle, moves[scored]);
+                    }
+                    for (int idx = 0; idx < scored; idx++) {
+                        double moveCost = cost + deltas[idx];
+                        if (moveCost < chosenCost) {
+                            chosen = idx;
+                            chosenCost = moveCost;
+                        }
+                    }
+                }
+                else {
+                    chosen = randGen.nextInt(numMoves);
+                    chosenCost = cost + costDelta(current, vehicles, randVehicle, moves[chosen]);
+                }
+
+                if (chosen >= 0) {
+                    applyInPlace(current, vehicles, randVehicle, moves[chosen]);
+                    cost = chosenCost;
+                }
+            }
+            iterCounter++;
+
+            // Keep the best solution and publish it for the watchdog
+            if (cost < bestCost) {
+                current.copyInto(best);
+                bestCost = cost;
+                bestIteration = iterCounter;
+
+                Pair<Solution, Double> published = incumbent;
+                if (published == null || cost < published.getRight()) {
+                    publish(runId, best.toSolution(vehicles), cost, vehicles);
+                }
+            }
+
+            if (metrics != null) {
+                long end = cpuTime ? bean.getCurrentThreadCpuTime() : 0L;
+                metrics.addIteration((scoringStart - generationStart) / 1e9, (end - scoringStart) / 1e9);
+                metrics.updateBestCost(cost);
+            }
+
+            if (terminationCondition(System.currentTimeMillis() - startTime, iterCounter, runId)) {
+                break;
+            }
+        } while (true);
+
+        if (metrics != null && allocatedBytes >= 0) {
+            metrics.addAllocation(SearchMetrics.currentThreadAllocatedBytes() - allocatedBytes, iterCounter);
+        }
+
+        if (bestIteration > 0) {
+            Solution bestSolution = best.toSolution(vehicles);
+            trajectoryBest.add(bestSolution, bestSolution.cost(), bestSolution.fingerprint(), bestIteration);
+        }
+        System.out.println("[INF] Last solution cost: " + cost);
+        return trajectoryBest;
+    }
+
+    // Encode a move of the in-place search (first index -1 for a relocation)
+    private static long move(int first, int second) {
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    private static double costDelta(ArraySolution solution, List<VarVehicle> vehicles, VarVehicle randVehicle, long move) {
+        int first = (int) (move >> 32);
+        int second = (int) move;
+        if (first < 0) {
+            int taskId = ArraySolution.taskId(solution.getStop(randVehicle, 0));
+            return solution.removeCostDelta(randVehicle, 0) + solution.addCostDelta(vehicles.get(second), taskId, 0);
+        }
+        return solution.swapCostDelta(randVehicle, first, second);
+    }
+
+    private static void applyInPlace(ArraySolution solution, List<VarVehicle> vehicles, VarVehicle randVehicle, long move) {
+        int first = (int) (move >> 32);
+        int second = (int) move;
+        if (first < 0) {
+            int taskId = solution.removeTaskAndSupplementaryAt(randVehicle, 0);
+            solution.addTaskAndSupplementaryAt(vehicles.get(second), taskId, 0);
+        }
+        else {
+            solution.swapVarTasksFor(randVehicle, first, second);
+        }
+    }
+
+    /**
+     * Run {@link #threads} independent trajectories on a fork-join pool, each one with its own split of
+     * the random generator and its own initial solution, and return the best solutions of the best trajectory.
+     *
+     * The splits and the initial solutions are created sequentially and ties are broken by the
+     * trajectory index, so for a fixed seed and number of threads the result only depends on
+     * how many iterations each trajectory gets before the deadline.
+     */
+    private EliteArchive<Solution> multiStart(List<VarVehicle> vehicles, TaskSet tasks,
+            SplittableRandom randGen, long startTime, long runId, Solution warmSolution) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<EliteArchive<Solution>>> trajectories = new ArrayList<>();
+            for (int trajectory = 0; trajectory < threads; trajectory++) {
+                SplittableRandom trajectoryRandGen = randGen.split();
+                Solution initialSolution = (trajectory == 0 && warmSolution != null) ? warmSolution
+                        : createInitialSolution(trajectory, vehicles, tasks, trajectoryRandGen);
+                trajectories.add(pool.submit(() -> search(initialSolution, vehicles, tasks, trajectoryRandGen, startTime, runId)));
+            }
+
+            // Keep the trajectory with the best solution (the first one on ties)
+            EliteArchive<Solution> best = null;
+            for (ForkJoinTask<EliteArchive<Solution>> trajectory: trajectories) {
+                EliteArchive<Solution> result = trajectory.join();
+                if (best == null || result.bestScore() < best.bestScore()) {
+                    best = result;
+                }
+            }
+            return best;
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Create the initial solution of a trajectory: the first uses the configured initializer,
+     * the second the max one and the rest a randomized assignment of the tasks.
+     */
+    private Solution createInitialSolution(int trajectory, List<VarVehicle> vehicles, TaskSet tasks, SplittableRandom randGen) {
+        switch (trajectory) {
+            case 0:
+                switch (initializer) {
+                    case Max:
+                        return createMaxInitialSolution(vehicles, tasks);
+                    case Regret:
+                        return createRegretInitialSolution(vehicles, tasks);
+                    default:
+                        return createShortestInitialSolution(vehicles, tasks);
+                }
+            case 1:
+                return createMaxInitialSolution(vehicles, tasks);
+            default:
+                return createRandomInitialSolution(vehicles, tasks, randGen);
+        }
     }
 
     /**
      * @return Return false if we must terminate the local search
      */
-    private boolean terminationCondition(long elapsedTime, int iterCounter) {
+    private boolean terminationCondition(long elapsedTime, int iterCounter, long runId) {
+
+        // Check if the run was stopped (or replaced by a newer one)
+        if (stopped(runId)) {
+            return true;
+        }
 
         // Check time
-        if (elapsedTime + 500 >= timeout) {  // give 500 ms to shutdown
+        if (elapsedTime + SHUTDOWN_TIME >= timeout) {  // give SHUTDOWN_TIME ms to shutdown
             return true;
         }
 
-        if (iterCounter >= iterations) {
+        if (iterCounter >= runIterations) {
             return true;
         }
 
         return false;
     }
 
-    private Solution localChoice(List<Solution> neighbors, Solution oldSolution, SplittableRandom randGen, Integer iterCounter) {
+    // True if the run was stopped (or replaced by a newer one), checked inside the loops of an iteration too
+    private boolean stopped(long runId) {
+        return runId != run.get();
+    }
+
+    /**
+     * @return The fraction of the search budget already used (the time or the iterations, whichever runs out first)
+     */
+    private double progress(long elapsedTime, int iterCounter) {
+        double timeProgress = (double) elapsedTime / Math.max(1, timeout - SHUTDOWN_TIME);
+        double iterProgress = (double) iterCounter / runIterations;
+        return Math.min(1D, Math.max(timeProgress, iterProgress));
+    }
+
+    /**
+     * Choose the next solution with an {@link AcceptanceStrategy}. The candidate is the best neighbor
+     * with probability p (otherwise a random one) and it replaces the old solution only if the strategy
+     * accepts it, so a bad random neighbor no longer throws away the progress made.
+     */
+    private Pair<Solution, Double> acceptanceChoice(List<Move> neighbors, Solution oldSolution, double oldCost,
+            SplittableRandom randGen, int iterCounter, EliteArchive<Solution> bestSolutions,
+            AcceptanceStrategy strategy, double progress, long runId) {
+        if (neighbors.isEmpty()) {
+            return new Pair<>(oldSolution, oldCost);
+        }
+
+        // Pick the candidate
+        Move move;
+        double cost;
+        if (randGen.nextDouble(1D) <= choiceProbability) {
+            double[] deltas = scoreNeighbors(neighbors, oldSolution, runId);
+            int bestIdx = 0;
+            for (int idx = 1; idx < deltas.length; idx++) {
+                if (deltas[idx] < deltas[bestIdx]) {
+                    bestIdx = idx;
+                }
+            }
+            move = neighbors.get(bestIdx);
+            cost = oldCost + deltas[bestIdx];
+        }
+        else {
+            move = neighbors.get(randGen.nextInt(neighbors.size()));
+            cost = oldCost + move.costDelta(oldSolution);
+        }
+
+        // Stay on the old solution if the candidate is rejected
+        if (!strategy.accept(oldCost, cost, progress, randGen)) {
+            return new Pair<>(oldSolution, oldCost);
+        }
+
+        Solution newSolution = new Solution(oldSolution);
+        move.apply(newSolution);
+
+        // Store the solution if it improves the best one
+        if (cost < bestSolutions.bestScore()) {
+            bestSolutions.add(newSolution, cost, newSolution.fingerprint(), iterCounter);
+        }
+
+        return new Pair<>(newSolution, cost);
+    }
+
+    /**
+     * Choose the next solution as a tabu search: the best neighbor whose fingerprint is not tabu, even if it
+     * is worse than the old solution. A tabu neighbor is still taken if it beats the best solution (aspiration).
+     * The neighbors are visited from the best delta on, so usually only the first fingerprint is computed.
+     */
+    private Pair<Solution, Double> tabuChoice(List<Move> neighbors, Solution oldSolution, double oldCost,
+            int iterCounter, EliteArchive<Solution> bestSolutions, TabuTable tabu, long runId) {
+        double[] deltas = scoreNeighbors(neighbors, oldSolution, runId);
+
+        while (true) {
+            int bestIdx = -1;
+            for (int idx = 0; idx < deltas.length; idx++) {
+                if (deltas[idx] != Double.POSITIVE_INFINITY && (bestIdx < 0 || deltas[idx] < deltas[bestIdx])) {
+                    bestIdx = idx;
+                }
+            }
+            if (bestIdx < 0) {
+                return new Pair<>(oldSolution, oldCost);  // Every neighbor is tabu
+            }
+
+            Move move = neighbors.get(bestIdx);
+            double cost = oldCost + deltas[bestIdx];
+            long fingerprint = move.fingerprintAfter(oldSolution);
+            if (tabu.contains(fingerprint) && cost >= bestSolutions.bestScore()) {
+                deltas[bestIdx] = Double.POSITIVE_INFINITY;
+                continue;
+            }
+
+            Solution newSolution = new Solution(oldSolution);
+            move.apply(newSolution);
+            tabu.add(fingerprint);
+
+            if (bestSolutions.accepts(cost)) {
+                bestSolutions.add(newSolution, cost, fingerprint, iterCounter);
+            }
+            return new Pair<>(newSolution, cost);
+        }
+    }
+
+    /**
+     * Choose the next solution among the neighbors. The moves are scored against the old solution
+     * with their cost deltas and only the chosen one is applied (on a copy of the old solution).
+     */
+    private Pair<Solution, Double> localChoice(List<Move> neighbors, Solution oldSolution, double oldCost,
+            SplittableRandom randGen, int iterCounter, EliteArchive<Solution> bestSolutions, long runId) {
+        if (neighbors.isEmpty()) {
+            return new Pair<>(oldSolution, oldCost);
+        }
         Double probability = randGen.nextDouble(1D);
 
         // With probability p return the best neighbor
         if (probability <= choiceProbability) {  // From 0.0 --to-> p: predict best
-            Double minCost = oldSolution.cost();
-            Solution bestSolution = oldSolution;
+            Move bestMove = null;
+            double minCost = oldCost;
 
-            for (Solution solution: neighbors) {
-                Double cost = solution.cost();
+            // Min-reduction in list order, so ties always go to the same move
+            double[] deltas = scoreNeighbors(neighbors, oldSolution, runId);
+            for (int idx = 0; idx < deltas.length; idx++) {
+                double cost = oldCost + deltas[idx];
                 if (cost < minCost) {
                     minCost = cost;
-                    bestSolution = solution;
+                    bestMove = neighbors.get(idx);
                 }
             }
 
-            // Store the best solution
-            bestSolutions.addElement(new Pair<>(bestSolution, iterCounter), minCost);
+            Solution bestSolution = oldSolution;
+            if (bestMove != null) {
+                bestSolution = new Solution(oldSolution);
+                bestMove.apply(bestSolution);
+            }
+
+            // Store the best solution if it enters the elites (the fingerprint is only computed then)
+            if (bestSolutions.accepts(minCost)) {
+                bestSolutions.add(bestSolution, minCost, bestSolution.fingerprint(), iterCounter);
+            }
 
             // Return the best solution
-            return bestSolution;
+            return new Pair<>(bestSolution, minCost);
         }
         // Else return a random neighbor (or old)
         else {
-            // neighbors.add(oldSolution);
-            return neighbors.get(randGen.nextInt(neighbors.size()));
+            Move move = neighbors.get(randGen.nextInt(neighbors.size()));
+            Solution newSolution = new Solution(oldSolution);
+            double cost = oldCost + move.costDelta(oldSolution);
+            move.apply(newSolution);
+            return new Pair<>(newSolution, cost);
+        }
+
+    }
+
+    /**
+     * @return The cost delta of each neighbor, in the order of the list (computed concurrently if parallelNeighbors).
+     * Once the run is stopped the remaining neighbors are not scored and get an infinite delta.
+     */
+    private double[] scoreNeighbors(List<Move> neighbors, Solution solution, long runId) {
+        double[] deltas = new double[neighbors.size()];
+        if (parallelNeighbors) {
+            IntStream.range(0, deltas.length).parallel().forEach(idx ->
+                deltas[idx] = stopped(runId) ? Double.POSITIVE_INFINITY : neighbors.get(idx).costDelta(solution));
+        }
+        else {
+            for (int idx = 0; idx < deltas.length; idx++) {
+                deltas[idx] = stopped(runId) ? Double.POSITIVE_INFINITY : neighbors.get(idx).costDelta(solution);
+            }
         }
+        return deltas;
+    }
 
+    /**
+     * Create the feasible moves around a solution. No solution is copied here,
+     * the moves are only checked against the given solution.
+     */
+    public List<Move> chooseNeighbors(Solution solution, List<VarVehicle> vehicles, SplittableRandom randGen) {
+        return chooseNeighbors(solution, vehicles, randGen, run.get());
     }
 
-    private List<Solution> chooseNeighbors(Solution solution, List<VarVehicle> vehicles, SplittableRandom randGen) {
-        List<Solution> neighbors = new ArrayList<>();
+    // The neighbors of a trajectory of the run runId. Once the run is stopped no more moves are created or checked.
+    private List<Move> chooseNeighbors(Solution solution, List<VarVehicle> vehicles, SplittableRandom randGen, long runId) {
+        List<Move> neighbors = new ArrayList<>();
 
         // Find all vehicles with tasks
         // VarVehicle taskVehicles =
@@ -127,42 +816,192 @@ public class StochasticLocalSearch {
             randVehicle = vehicles.get( randGen.nextInt(vehicles.size()) );
         } while (solution.getNextTask(randVehicle) == null);
 
+        if (parallelNeighbors) {
+            List<Move> parallelNeighbors = chooseNeighborsParallel(solution, vehicles, randVehicle, runId);
+            if (intraRouteMoves) {
+                addIntraRouteMoves(parallelNeighbors, solution, randVehicle, runId);
+            }
+            return parallelNeighbors;
+        }
+
         // Operation 1:
-        // Create one new solution by transferring the randVehicles next task to all other vehicles
+        // Move the randVehicles next task to all other vehicles
         // under the constraint that the can fit it (capacity constraint).
         for (VarVehicle vehicle: vehicles) {
+            if (stopped(runId)) break;
             if (vehicle == randVehicle) continue; // Skip same vehicle
 
-            // Create new solution from changeVehicle
-            Solution newSolution = changeVehicle(solution, randVehicle, vehicle);
-
-            // If constraints are met add it to neighbors
-            if (newSolution.checkCapacityConstraint(vehicle)) {
-                neighbors.add(newSolution);
-
-                // Change the order of the deliver the task with every possible pickup after that and create a new neighbor
-                // neighbors.addAll(swapDeliveryTask(newSolution, vehicle));
+            Move move = relocation(randVehicle, vehicle);
+            if (move.isFeasible(solution)) {
+                neighbors.add(move);
             }
         }
 
         // Operation 2:
-        // Swap the order of the all tasks (if possible) in the randVehicle and create a new solution for each swap
-        for (int outerIdx = 0; outerIdx < solution.getTasksSize(randVehicle) - 1; outerIdx++) { // Until previous of last
+        // Swap the order of the all tasks (if possible) in the randVehicle
+        City[] cities = routeCities(solution, randVehicle);
+        long swaps = 0;
+        for (int outerIdx = 0; outerIdx < solution.getTasksSize(randVehicle) - 1 && !stopped(runId); outerIdx++) { // Until previous of last
             for (int innerIdx = outerIdx + 1; innerIdx < solution.getTasksSize(randVehicle); innerIdx++) { // Until last
 
-                    // Check if swap is violating the pickUp-Delivery order constraints
-                if (solution.checkPickUpDeliverOrder(randVehicle, outerIdx, innerIdx)) {
-                    Solution newSolution = new Solution(solution);
-                    newSolution.swapVarTasksFor(randVehicle, outerIdx, innerIdx);
+                if (!isCandidateSwap(cities, outerIdx, innerIdx)) continue;
+                swaps++;
 
-                    // Check if the weight constraints are satisfied
-                    if (newSolution.checkCapacityConstraint(randVehicle)) {
-                        neighbors.add(newSolution);
+                // Check the pickUp-Delivery order and the weight constraints
+                Move move = new SwapMove(randVehicle, outerIdx, innerIdx);
+                if (move.isFeasible(solution)) {
+                    neighbors.add(move);
+                }
+            }
+        }
+
+        recordNeighbors(neighbors, vehicles, swaps);
+        if (intraRouteMoves) {
+            addIntraRouteMoves(neighbors, solution, randVehicle, runId);
+        }
+
+        return neighbors;
+    }
+
+    /**
+     * Operation 3: move every segment of 1 to 3 tasks of the route of v before every other task (Or-opt),
+     * within the range where it does not jump over the supplementary of one of its tasks.
+     * Operation 4: reverse every segment of the route of v (2-opt). For a given start the segment grows only while
+     * no task has both its pickUp and its delivery in it, since a longer segment can never become feasible again.
+     */
+    private void addIntraRouteMoves(List<Move> neighbors, Solution solution, VarVehicle v, long runId) {
+        int size = solution.getTasksSize(v);
+        City[] cities = routeCities(solution, v);
+        long orOpts = 0;
+        long feasibleOrOpts = 0;
+        long twoOpts = 0;
+        long feasibleTwoOpts = 0;
+
+        for (int length = 1; length <= 3; length++) {
+            for (int from = 0; from + length <= size && !stopped(runId); from++) {
+                int last = from + length - 1;
+
+                // The segment cannot jump over the supplementary of one of its tasks
+                int minTo = 0;
+                int maxTo = size;
+                for (int idx = from; idx <= last; idx++) {
+                    int supIdx = solution.getSupplementaryIndex(v, idx);
+                    if (supIdx < from) {
+                        minTo = Math.max(minTo, supIdx + 1);
+                    }
+                    else if (supIdx > last) {
+                        maxTo = Math.min(maxTo, supIdx);
                     }
                 }
+
+                for (int to = minTo; to <= maxTo; to++) {
+                    if (to >= from && to <= from + length) continue; // Same place
+                    if (!isNear(cities, from, to - 1)) continue;
+                    orOpts++;
+
+                    Move move = new OrOptMove(v, from, length, to);
+                    if (move.isFeasible(solution)) {
+                        neighbors.add(move);
+                        feasibleOrOpts++;
+                    }
+                }
+            }
+        }
+
+        for (int t1Idx = 0; t1Idx < size - 1 && !stopped(runId); t1Idx++) {
+            for (int t2Idx = t1Idx + 1; t2Idx < size; t2Idx++) {
+                int supIdx = solution.getSupplementaryIndex(v, t2Idx);
+                if (supIdx >= t1Idx && supIdx < t2Idx) break; // The pair of t2Idx is in the segment
+                if (!isNear(cities, t2Idx, t1Idx - 1)) continue; // t2Idx comes after t1Idx - 1
+                twoOpts++;
+
+                Move move = new TwoOptMove(v, t1Idx, t2Idx);
+                if (move.isFeasible(solution)) {
+                    neighbors.add(move);
+                    feasibleTwoOpts++;
+                }
+            }
+        }
+
+        if (metrics != null) {
+            metrics.addIntraRouteNeighbors(orOpts, feasibleOrOpts, twoOpts, feasibleTwoOpts);
+        }
+    }
+
+    // The move of the first task of v1 to v2
+    private Move relocation(VarVehicle v1, VarVehicle v2) {
+        return bestInsertion ? new InsertionMove(v1, v2, nearestNeighbors) : new RelocateMove(v1, v2);
+    }
+
+    // The cities of the route of v, shifted by one so that the start city is at 0 (null if the candidate lists are off)
+    private City[] routeCities(Solution solution, VarVehicle v) {
+        if (nearestNeighbors <= 0) {
+            return null;
+        }
+        City[] cities = new City[solution.getTasksSize(v) + 1];
+        for (int idx = -1; idx < cities.length - 1; idx++) {
+            cities[idx + 1] = solution.getCityAt(v, idx);
+        }
+        return cities;
+    }
+
+    // True if the task at taskIdx may follow the task at previousIdx (-1 for the start city)
+    private boolean isNear(City[] cities, int taskIdx, int previousIdx) {
+        return cities == null || topologyCache.isNear(cities[taskIdx + 1], cities[previousIdx + 1], nearestNeighbors);
+    }
+
+    // A swap is a candidate if one of the two tasks lands after one of its nearest cities
+    private boolean isCandidateSwap(City[] cities, int t1Idx, int t2Idx) {
+        return isNear(cities, t2Idx, t1Idx - 1) || (t2Idx > t1Idx + 1 && isNear(cities, t1Idx, t2Idx - 1));
+    }
+
+    /**
+     * Count the generated and the feasible neighbors of each operator in the metrics (if enabled).
+     *
+     * @param swaps The swaps generated, i.e. the candidate pairs of the route (all of them without the candidate lists)
+     */
+    private void recordNeighbors(List<Move> neighbors, List<VarVehicle> vehicles, long swaps) {
+        if (metrics != null) {
+            long feasibleRelocations = 0;
+            long feasibleSwaps = 0;
+            for (Move move: neighbors) {
+                if (move instanceof RelocateMove || move instanceof InsertionMove) {
+                    feasibleRelocations++;
+                }
+                else if (move instanceof SwapMove) {
+                    feasibleSwaps++;
+                }
             }
+            metrics.addNeighbors(vehicles.size() - 1, feasibleRelocations, swaps, feasibleSwaps);
         }
+    }
+
+    /**
+     * Same neighbors as {@link #chooseNeighbors}, in the same order, but the moves are created and
+     * checked on parallel streams. Ordered collection keeps the result independent of thread timing.
+     */
+    private List<Move> chooseNeighborsParallel(Solution solution, List<VarVehicle> vehicles, VarVehicle randVehicle, long runId) {
+        int size = solution.getTasksSize(randVehicle);
+        City[] cities = routeCities(solution, randVehicle);
 
+        // Operation 1: relocations
+        List<Move> neighbors = vehicles.parallelStream()
+                .filter(vehicle -> vehicle != randVehicle && !stopped(runId))
+                .map(vehicle -> relocation(randVehicle, vehicle))
+                .filter(move -> move.isFeasible(solution))
+                .collect(Collectors.toList());
+
+        // Operation 2: swaps, split on the outer index
+        LongAdder swaps = new LongAdder();
+        neighbors.addAll(IntStream.range(0, size - 1).parallel().boxed()
+                .flatMap(outerIdx -> IntStream.range(outerIdx + 1, size)
+                        .filter(innerIdx -> isCandidateSwap(cities, outerIdx, innerIdx))
+                        .mapToObj(innerIdx -> (Move) new SwapMove(randVehicle, outerIdx, innerIdx)))
+                .peek(move -> swaps.increment())
+                .filter(move -> !stopped(runId) && move.isFeasible(solution))
+                .collect(Collectors.toList()));
+
+        recordNeighbors(neighbors, vehicles, swaps.sum());
         return neighbors;
     }
 
@@ -170,7 +1009,7 @@ public class StochasticLocalSearch {
      * Creates the initial solution for the problem by assigning every task to the vehicle with the maximum capacity.
      */
     public Solution createShortestInitialSolution(List<VarVehicle> vehicles, TaskSet tasks) {
-        Solution solution = new Solution(vehicles);
+        Solution solution = new Solution(vehicles, topologyCache);
 
         // Find the vehicle with the maximum capacity
         VarVehicle maxV = Collections.max(vehicles, Comparator.comparing(s -> s.capacity()));
@@ -181,7 +1020,7 @@ public class StochasticLocalSearch {
             VarVehicle closestVehicle = null;
             Double minDistance = Double.MAX_VALUE;
             for (VarVehicle v: vehicles) {
-                double dist = v.startCity().distanceTo(t.pickupCity);
+                double dist = topologyCache.distance(v.startCity(), t.pickupCity);
                 if (dist < minDistance) {
                     minDistance = dist;
                     closestVehicle = v;
@@ -207,8 +1046,81 @@ public class StochasticLocalSearch {
         return solution;
     }
 
+    /**
+     * Repair the solution of a previous run for new vehicles and tasks: keep the routes of the tasks that
+     * are still there, evict the heaviest tasks of the routes that no longer fit the capacities, and insert
+     * the evicted and the new tasks at their cheapest positions.
+     *
+     * @return The repaired solution and the number of tasks that changed (removed, evicted or inserted)
+     */
+    public Pair<Solution, Integer> createWarmStartSolution(Solution previous, List<VarVehicle> vehicles, TaskSet tasks) {
+        Solution solution = new Solution(previous, vehicles, tasks);
+        List<Pair<VarTask, VarTask>> toInsert = new ArrayList<>();
+
+        // Evict the heaviest tasks of the routes that do not fit anymore
+        for (VarVehicle v: vehicles) {
+            while (!solution.checkCapacityConstraint(v)) {
+                int heaviestIdx = -1;
+                for (int idx = 0; idx < solution.getTasksSize(v); idx++) {
+                    VarTask task = solution.getTask(v, idx);
+                    if (task.type() == Type.PickUp && (heaviestIdx < 0 || task.weight() > solution.getTask(v, heaviestIdx).weight())) {
+                        heaviestIdx = idx;
+                    }
+                }
+                Pair<VarTask, VarTask> pair = solution.getTaskAndSupplementaryAt(v, heaviestIdx);
+                solution.removeTaskAndSupplementaryAt(v, pair, heaviestIdx);
+                toInsert.add(pair);
+            }
+        }
+
+        // The tasks that are not in the solution (new or evicted)
+        Set<Integer> planned = new HashSet<>();
+        for (VarVehicle v: vehicles) {
+            for (int idx = 0; idx < solution.getTasksSize(v); idx++) {
+                planned.add(solution.getTask(v, idx).task().id);
+            }
+        }
+        int evicted = toInsert.size();
+        for (Task t: tasks) {
+            if (!planned.contains(t.id) && !containsTask(toInsert, t)) {
+                toInsert.add(new Pair<>(new VarTask(t, Type.PickUp), new VarTask(t, Type.Delivery)));
+            }
+        }
+        int removed = previous.getTaskCount() - planned.size() - evicted;
+
+        InsertionHeuristics.greedyInsert(solution, toInsert, vehicles);
+
+        return new Pair<>(solution, removed + toInsert.size());
+    }
+
+    // True if one of the pairs is the given task
+    private boolean containsTask(List<Pair<VarTask, VarTask>> pairs, Task task) {
+        for (Pair<VarTask, VarTask> pair: pairs) {
+            if (pair.getLeft().task().id == task.id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the initial solution with the regret-k insertion: the tasks are inserted at their cheapest
+     * positions, the ones with the highest regret (most to lose by waiting) first.
+     */
+    public Solution createRegretInitialSolution(List<VarVehicle> vehicles, TaskSet tasks) {
+        Solution solution = new Solution(vehicles, topologyCache);
+
+        List<Pair<VarTask, VarTask>> pairs = new ArrayList<>();
+        for (Task t: tasks) {
+            pairs.add(new Pair<>(new VarTask(t, Type.PickUp), new VarTask(t, Type.Delivery)));
+        }
+        InsertionHeuristics.regretInsert(solution, pairs, vehicles, regretK);
+
+        return solution;
+    }
+
     public Solution createMaxInitialSolution(List<VarVehicle> vehicles, TaskSet tasks) {
-        Solution solution = new Solution(vehicles);
+        Solution solution = new Solution(vehicles, topologyCache);
 
         // Find the vehicle with the maximum capacity
         VarVehicle v = Collections.max(vehicles, Comparator.comparing(s -> s.capacity()));
@@ -230,30 +1142,33 @@ public class StochasticLocalSearch {
 
 
     /**
-     * Assigns the first task of vehicle v1 to vehicle v2. Also moves its supplementary task.
+     * Creates an initial solution by assigning every task to a random vehicle that can carry it.
      */
-    private Solution changeVehicle(Solution solution, VarVehicle v1, VarVehicle v2) {
-        // Create a copy of the old solution.
-        Solution newSolution = new Solution(solution);
+    public Solution createRandomInitialSolution(List<VarVehicle> vehicles, TaskSet tasks, SplittableRandom randGen) {
+        Solution solution = new Solution(vehicles, topologyCache);
 
-        // Get the first task of vehicle v1 and its supplementary task.
-        Pair<VarTask, VarTask> taskPair = solution.getTaskAndSupplementaryAt(v1, 0);
-
-        // Remove the first task and its supplementary
-        newSolution.removeTaskAndSupplementaryAt(v1, taskPair, 0);
+        for (Task t: tasks) {
+            // Collect the vehicles that can carry the task
+            List<VarVehicle> candidates = new ArrayList<>();
+            for (VarVehicle v: vehicles) {
+                if (t.weight <= v.capacity()) {
+                    candidates.add(v);
+                }
+            }
 
-        // Insert the pickUp as the first task of vehicle v2 and the delivery as the second.
-        newSolution.addTaskAndSupplementaryAt(v2, taskPair, 0);
+            if (candidates.isEmpty()) {
+                // The problem is unsolvable if the biggest vehicle cannot carry a task
+                throw new AssertionError("The problem is unsolvable. Initial solution cannot be created.");
+            }
 
-        // Update the vehicles of the tasks
-        newSolution.updateTaskVehicle(taskPair.getLeft(), v2);
-        newSolution.updateTaskVehicle(taskPair.getRight(), v2);
+            VarVehicle v = candidates.get(randGen.nextInt(candidates.size()));
+            solution.addVarTask(v, new VarTask(t, Type.PickUp));
+            solution.addVarTask(v, new VarTask(t, Type.Delivery));
+        }
 
-        return newSolution;
+        return solution;
     }
 
-
-
     /**
      * Swap the 1st delivery task with all pickUp task after it (care the weight).
      * @NOTE: The 1st delivery task must be at index 1!
@@ -0,0 +1,45 @@
+package sls;
+
+import model.Solution;
+import model.VarVehicle;
+
+/**
+ * Swaps the tasks at indices t1Idx and t2Idx (t1Idx < t2Idx) in the route of a vehicle.
+ */
+public class SwapMove extends Move {
+
+    private final VarVehicle v;
+    private final int t1Idx;
+    private final int t2Idx;
+
+    public SwapMove(VarVehicle v, int t1Idx, int t2Idx) {
+        this.v = v;
+        this.t1Idx = t1Idx;
+        this.t2Idx = t2Idx;
+    }
+
+    @Override
+    public boolean isFeasible(Solution solution) {
+        return solution.checkPickUpDeliverOrder(v, t1Idx, t2Idx) && solution.checkSwapCapacity(v, t1Idx, t2Idx);
+    }
+
+    @Override
+    public double costDelta(Solution solution) {
+        return solution.swapCostDelta(v, t1Idx, t2Idx);
+    }
+
+    @Override
+    public void apply(Solution solution) {
+        solution.swapVarTasksFor(v, t1Idx, t2Idx);
+    }
+
+    @Override
+    public long fingerprintAfter(Solution solution) {
+        return solution.swapFingerprint(v, t1Idx, t2Idx);
+    }
+
+    @Override
+    public String toString() {
+        return "Swap {" + v + ": " + t1Idx + " <-> " + t2Idx + "}";
+    }
+}
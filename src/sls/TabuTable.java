@@ -0,0 +1,99 @@
+package sls;
+
+/**
+ * The fingerprints of the last tenure solutions visited by a tabu search.
+ *
+ * A fixed-size open-addressing hash set with linear probing, plus a ring buffer with the insertion
+ * order: when the set is full the oldest fingerprint is removed (with backward-shift deletion, so no
+ * tombstones accumulate). Lookups and updates are O(1) and nothing is allocated after construction.
+ */
+public class TabuTable {
+
+    private static final long EMPTY = 0;  // Marks an empty slot (a fingerprint 0 is stored as 1)
+
+    private final long[] slots;  // The open-addressing table, at most half full
+    private final int mask;
+    private final long[] order;  // The stored fingerprints, oldest at head
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * @param tenure The number of recent fingerprints that are tabu
+     */
+    public TabuTable(int tenure) {
+        if (tenure < 1) {
+            throw new IllegalArgumentException("The tenure must be positive: " + tenure);
+        }
+        int capacity = Integer.highestOneBit(Math.max(2, tenure) * 2 - 1) << 1;  // A power of two >= 2 * tenure
+        this.slots = new long[capacity];
+        this.mask = capacity - 1;
+        this.order = new long[tenure];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return True if the fingerprint is one of the last tenure fingerprints added
+     */
+    public boolean contains(long fingerprint) {
+        long key = toKey(fingerprint);
+        for (int slot = slot(key); slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (slots[slot] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Make a fingerprint tabu, forgetting the oldest one if the table is full. Fingerprints already in the table are ignored.
+     */
+    public void add(long fingerprint) {
+        long key = toKey(fingerprint);
+        if (contains(fingerprint)) {
+            return;
+        }
+        if (size == order.length) {
+            remove(order[head]);
+            head = (head + 1) % order.length;
+            size--;
+        }
+        order[(head + size) % order.length] = key;
+        size++;
+
+        int slot = slot(key);
+        while (slots[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = key;
+    }
+
+    // Remove a key and shift back the keys of its cluster that were displaced past it
+    private void remove(long key) {
+        int slot = slot(key);
+        while (slots[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        int hole = slot;
+        for (int next = (hole + 1) & mask; slots[next] != EMPTY; next = (next + 1) & mask) {
+            int home = slot(slots[next]);
+            // Move the key into the hole if its home is not in (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                slots[hole] = slots[next];
+                hole = next;
+            }
+        }
+        slots[hole] = EMPTY;
+    }
+
+    private static long toKey(long fingerprint) {
+        return fingerprint == EMPTY ? 1 : fingerprint;
+    }
+
+    // The fingerprints are already well mixed, so the low bits are enough
+    private int slot(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+}
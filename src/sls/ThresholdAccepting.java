@@ -0,0 +1,28 @@
+package sls;
+
+import java.util.SplittableRandom;
+
+/**
+ * Threshold accepting: a candidate is accepted if it is worse than the current solution by at most a threshold.
+ *
+ * The threshold starts at initialRatio * initialCost and shrinks linearly to 0 with the progress of the search.
+ */
+public class ThresholdAccepting implements AcceptanceStrategy {
+
+    private double initialRatio;  // The initial threshold as a fraction of the initial cost
+    private double initialThreshold;
+
+    public ThresholdAccepting(double initialRatio) {
+        this.initialRatio = initialRatio;
+    }
+
+    @Override
+    public void reset(double initialCost) {
+        this.initialThreshold = initialRatio * initialCost;
+    }
+
+    @Override
+    public boolean accept(double currentCost, double candidateCost, double progress, SplittableRandom randGen) {
+        return candidateCost - currentCost <= initialThreshold * (1D - progress);
+    }
+}
@@ -0,0 +1,40 @@
+package sls;
+
+import model.Solution;
+import model.VarVehicle;
+
+/**
+ * Reverses the tasks in [t1Idx, t2Idx] (t1Idx < t2Idx) of the route of a vehicle (2-opt).
+ */
+public class TwoOptMove extends Move {
+
+    private final VarVehicle v;
+    private final int t1Idx;
+    private final int t2Idx;
+
+    public TwoOptMove(VarVehicle v, int t1Idx, int t2Idx) {
+        this.v = v;
+        this.t1Idx = t1Idx;
+        this.t2Idx = t2Idx;
+    }
+
+    @Override
+    public boolean isFeasible(Solution solution) {
+        return solution.checkReverse(v, t1Idx, t2Idx);
+    }
+
+    @Override
+    public double costDelta(Solution solution) {
+        return solution.reverseCostDelta(v, t1Idx, t2Idx);
+    }
+
+    @Override
+    public void apply(Solution solution) {
+        solution.reverseSegment(v, t1Idx, t2Idx);
+    }
+
+    @Override
+    public String toString() {
+        return "TwoOpt {" + v + ": " + t1Idx + " .. " + t2Idx + "}";
+    }
+}
@@ -2,9 +2,16 @@ package template;
 
 //the list of imports
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import logist.LogistSettings;
 import logist.LogistPlatform;
 
@@ -20,8 +27,15 @@ import logist.task.TaskDistribution;
 import logist.task.TaskSet;
 import logist.topology.Topology;
 import logist.topology.Topology.City;
+import model.Solution;
+import model.SolutionCheckpoint;
 import model.VarVehicle;
+import sls.AdaptiveLargeNeighborhoodSearch;
+import sls.SearchMetrics;
+import sls.SearchOptions;
+import sls.Solver;
 import sls.StochasticLocalSearch;
+import utils.TopologyCache;
 
 /**
  * A very simple auction agent that assigns all tasks to its first vehicle and
@@ -31,12 +45,16 @@ import sls.StochasticLocalSearch;
 @SuppressWarnings("unused")
 public class CentralizedTemplate implements CentralizedBehavior {
 
+    private static final long WATCHDOG_MARGIN = 250;  // ms kept to build the plans once the watchdog fires
+
     private Topology topology;
     private TaskDistribution distribution;
     private Agent agent;
     private long timeout_setup;
     private long timeout_plan;
-    private StochasticLocalSearch sls;
+    private TopologyCache topologyCache;
+    private Solver solver;
+    private SearchMetrics metrics;
 
     @Override
     public void setup(Topology topology, TaskDistribution distribution,
@@ -57,8 +75,30 @@ public class CentralizedTemplate implements CentralizedBehavior {
         // the plan method cannot execute more than timeout_plan milliseconds
         timeout_plan = ls.get(LogistSettings.TimeoutKey.PLAN);
 
-        // The sls algorithm
-        sls = new StochasticLocalSearch(0.45, 10000, timeout_plan);
+        // Precompute the distances once, the plan phase only reads them
+        topologyCache = new TopologyCache(topology);
+
+        // Expose the telemetry of the search over JMX if asked (-Dsls.metrics=true, or a CSV file with -Dsls.metrics.csv)
+        if (Boolean.getBoolean("sls.metrics") || System.getProperty("sls.metrics.csv") != null) {
+            metrics = new SearchMetrics();
+            metrics.register();
+        }
+
+        // The search algorithm: the sls, or the alns if asked (-Dsls.solver=alns)
+        if ("alns".equals(System.getProperty("sls.solver"))) {
+            AdaptiveLargeNeighborhoodSearch alns = new AdaptiveLargeNeighborhoodSearch(100000, timeout_plan, topologyCache);
+            alns.setMetrics(metrics);
+            solver = alns;
+        }
+        else {
+            StochasticLocalSearch sls = new StochasticLocalSearch(0.45, 10000, timeout_plan, topologyCache);
+            // The options are off unless asked (-Dsls.<option>, see SearchOptions). A fixed number of trajectories
+            // (1 by default) gives the same result for a seed on every machine.
+            SearchOptions.fromSystemProperties().applyTo(sls);
+            sls.setMetrics(metrics);
+            sls.setCheckpoint(openCheckpoint());
+            solver = sls;
+        }
 
         this.topology = topology;
         this.distribution = distribution;
@@ -69,14 +109,127 @@ public class CentralizedTemplate implements CentralizedBehavior {
     public List<Plan> plan(List<Vehicle> vehicles, TaskSet tasks) {
         long time_start = System.currentTimeMillis();
 
-        // Apply the sls algorithm
-        List<Plan> plans = sls.apply(VarVehicle.toVarVehicle(vehicles), tasks);
+        // Apply the search algorithm on a worker thread, so that we can always answer before timeout_plan
+        List<VarVehicle> varVehicles = VarVehicle.toVarVehicle(vehicles);
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Plan> plans;
+        try {
+            Future<List<Plan>> future = executor.submit(() -> solver.apply(varVehicles, tasks));
+            try {
+                plans = future.get(Math.max(timeout_plan - WATCHDOG_MARGIN, 0), TimeUnit.MILLISECONDS);
+            }
+            catch (TimeoutException | InterruptedException exc) {
+                System.out.println("[INF] Watchdog fired (" + exc.getClass().getSimpleName() + "), returning the best plan so far");
+                future.cancel(true);
+                solver.stop();
+                plans = bestSoFarPlans(vehicles, varVehicles, tasks);
+            }
+            catch (ExecutionException exc) {
+                // A bug of the search, not a timeout: report it instead of hiding it behind a fallback plan
+                System.out.println("[ERR] The search failed: " + exc.getCause());
+                if (exc.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) exc.getCause();
+                }
+                if (exc.getCause() instanceof Error) {
+                    throw (Error) exc.getCause();
+                }
+                throw new IllegalStateException("The search failed", exc.getCause());
+            }
+        }
+        finally {
+            // Do not wait for a stopped worker: it is a daemon, it stops at the next check of its run id, and a
+            // stopped run can neither publish nor become the source of the next warm start
+            executor.shutdownNow();
+        }
 
         long time_end = System.currentTimeMillis();
         long duration = time_end - time_start;
         System.out.println("The plan was generated in " + duration + " milliseconds.");
+        if (metrics != null) {
+            System.out.println(metrics);
+
+            // Dump the best cost over time if asked (-Dsls.metrics.csv=<file>)
+            String metricsCsv = System.getProperty("sls.metrics.csv");
+            if (metricsCsv != null) {
+                metrics.writeCsv(metricsCsv);
+            }
+        }
 
         return plans;
     }
 
+    /**
+     * @return The checkpoint of the search if asked (-Dsls.checkpoint=<file>), or null
+     */
+    private SolutionCheckpoint openCheckpoint() {
+        String path = System.getProperty("sls.checkpoint");
+        if (path == null) {
+            return null;
+        }
+        try {
+            return new SolutionCheckpoint(path);
+        }
+        catch (IOException | IllegalArgumentException exc) {
+            System.out.println("There was a problem opening the checkpoint " + path + ": " + exc);
+            return null;
+        }
+    }
+
+    /**
+     * @return The plans of the best solution the search published so far, or the naive plan if there is none
+     * @throws AssertionError If there is no solution yet and a task does not fit in the biggest vehicle
+     */
+    private List<Plan> bestSoFarPlans(List<Vehicle> vehicles, List<VarVehicle> varVehicles, TaskSet tasks) {
+        Solution best = solver.getBestSoFar();
+        if (best != null) {
+            return best.toPlans(varVehicles);
+        }
+
+        // Give all the tasks to the biggest vehicle, it is the only one that can carry all of them
+        Vehicle biggest = vehicles.get(0);
+        for (Vehicle vehicle: vehicles) {
+            if (vehicle.capacity() > biggest.capacity()) {
+                biggest = vehicle;
+            }
+        }
+
+        // The naive plan carries one task at a time
+        for (Task task: tasks) {
+            if (task.weight > biggest.capacity()) {
+                throw new AssertionError("The problem is unsolvable. No vehicle can carry: " + task);
+            }
+        }
+
+        List<Plan> plans = new ArrayList<Plan>();
+        for (Vehicle vehicle: vehicles) {
+            plans.add(vehicle == biggest ? naivePlan(vehicle, tasks) : Plan.EMPTY);
+        }
+        return plans;
+    }
+
+    private Plan naivePlan(Vehicle vehicle, TaskSet tasks) {
+        City current = vehicle.getCurrentCity();
+        Plan plan = new Plan(current);
+
+        for (Task task : tasks) {
+            // move: current city => pickup location
+            topologyCache.appendMoves(plan, current, task.pickupCity);
+
+            plan.appendPickup(task);
+
+            // move: pickup location => delivery location
+            topologyCache.appendMoves(plan, task.pickupCity, task.deliveryCity);
+
+            plan.appendDelivery(task);
+
+            // set current city
+            current = task.deliveryCity;
+        }
+        return plan;
+    }
+
 }
@@ -20,6 +20,7 @@ import logist.task.TaskDistribution;
 import logist.task.TaskSet;
 import logist.topology.Topology;
 import logist.topology.Topology.City;
+import utils.TopologyCache;
 
 /**
  * A very simple auction agent that assigns all tasks to its first vehicle and
@@ -34,6 +35,7 @@ public class RandomTemplate implements CentralizedBehavior {
     private Agent agent;
     private long timeout_setup;
     private long timeout_plan;
+    private TopologyCache topologyCache;
 
     @Override
     public void setup(Topology topology, TaskDistribution distribution,
@@ -53,6 +55,9 @@ public class RandomTemplate implements CentralizedBehavior {
         // the plan method cannot execute more than timeout_plan milliseconds
         timeout_plan = ls.get(LogistSettings.TimeoutKey.PLAN);
 
+        // Precompute the shortest paths once, the plans are expanded from them
+        topologyCache = new TopologyCache(topology);
+
         this.topology = topology;
         this.distribution = distribution;
         this.agent = agent;
@@ -84,16 +89,12 @@ public class RandomTemplate implements CentralizedBehavior {
 
         for (Task task : tasks) {
             // move: current city => pickup location
-            for (City city : current.pathTo(task.pickupCity)) {
-                plan.appendMove(city);
-            }
+            topologyCache.appendMoves(plan, current, task.pickupCity);
 
             plan.appendPickup(task);
 
             // move: pickup location => delivery location
-            for (City city : task.path()) {
-                plan.appendMove(city);
-            }
+            topologyCache.appendMoves(plan, task.pickupCity, task.deliveryCity);
 
             plan.appendDelivery(task);
 
@@ -0,0 +1,69 @@
+package utils;
+
+/**
+ * Segment tree over the loads of a route (the load of the vehicle after each stop)
+ * supporting range-max in O(log n).
+ *
+ * The tree is never modified after it is built (a route that changes gets a new one),
+ * so queries can run concurrently.
+ */
+public class LoadSegmentTree {
+
+    private final int size;
+    private final int[] max;  // The max of the range of each node
+
+    public LoadSegmentTree(int[] loads, int size) {
+        this.size = size;
+        this.max = new int[4 * Math.max(1, size)];
+        if (size > 0) {
+            build(1, 0, size - 1, loads);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The load at idx
+     */
+    public int get(int idx) {
+        return rangeMax(idx, idx + 1);
+    }
+
+    /**
+     * @return The max load in [from, to), or Integer.MIN_VALUE if the range is empty
+     */
+    public int rangeMax(int from, int to) {
+        if (from >= to) {
+            return Integer.MIN_VALUE;
+        }
+        return rangeMax(1, 0, size - 1, from, to - 1);
+    }
+
+    private void build(int node, int left, int right, int[] loads) {
+        if (left == right) {
+            max[node] = loads[left];
+            return;
+        }
+        int mid = (left + right) >>> 1;
+        build(2 * node, left, mid, loads);
+        build(2 * node + 1, mid + 1, right, loads);
+        max[node] = Math.max(max[2 * node], max[2 * node + 1]);
+    }
+
+    private int rangeMax(int node, int left, int right, int from, int to) {
+        if (from <= left && right <= to) {
+            return max[node];
+        }
+        int mid = (left + right) >>> 1;
+        int result = Integer.MIN_VALUE;
+        if (from <= mid) {
+            result = Math.max(result, rangeMax(2 * node, left, mid, from, to));
+        }
+        if (to > mid) {
+            result = Math.max(result, rangeMax(2 * node + 1, mid + 1, right, from, to));
+        }
+        return result;
+    }
+}
@@ -35,7 +35,7 @@ public class Timer {
                 this.startTime = getCpuTime(); // CPU time is measured in nanoseconds.
                 break;
             case WALL_CLOCK_TIME:
-                this.startTime = getWallClockTime(); // Wall clock time is measured in milliseconds.
+                this.startTime = getWallClockTime(); // Wall clock time is measured in nanoseconds.
                 break;
         }
     }
@@ -46,7 +46,7 @@ public class Timer {
             case CPU_TIME:
                 return (double) (getCpuTime() - this.startTime) / 1_000_000_000.0;
             case WALL_CLOCK_TIME:
-                return (double) (getWallClockTime() - this.startTime) / 1_000.0;
+                return (double) (getWallClockTime() - this.startTime) / 1_000_000_000.0;
             default:
                 return 0.0;
         }
@@ -58,9 +58,9 @@ public class Timer {
         return bean.isCurrentThreadCpuTimeSupported() ? bean.getCurrentThreadCpuTime() : 0L;
     }
 
-    // Returns the current time in milliseconds.
+    // Returns the current time in nanoseconds (monotonic, only meaningful as a difference).
     private long getWallClockTime() {
-        return System.currentTimeMillis();
+        return System.nanoTime();
     }
 
     @Override
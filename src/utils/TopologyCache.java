@@ -0,0 +1,104 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import logist.plan.Plan;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+/**
+ * Data about a topology that is computed once (in the setup of the agent) and then read by city id
+ * in the hot paths of the search, instead of going through the logist object graph.
+ */
+public class TopologyCache {
+
+    private final double[][] distances;  // The shortest distances between all pairs of cities (distances[i][j] -> dist from i to j)
+    private final int[][] nextHops;      // The city after i on the shortest path from i to j (nextHops[i][j], j itself for a neighbor)
+    private final City[] cities;         // The cities by id
+    private final int[][] nearest;       // The ids of all cities sorted by distance from city i (nearest[i][0] == i)
+    private final int[][] ranks;         // The position of city j in nearest[i] (ranks[i][j])
+
+    public TopologyCache(Topology topology) {
+        this.distances = Utils.shortestDistances(topology);
+
+        this.cities = new City[topology.size()];
+        for (City city: topology) {
+            this.cities[city.id] = city;
+        }
+
+        // Ask the topology for each path once, the plans are then expanded hop by hop
+        this.nextHops = new int[topology.size()][topology.size()];
+        for (City from: topology) {
+            for (City to: topology) {
+                List<City> path = from.pathTo(to);
+                this.nextHops[from.id][to.id] = path.isEmpty() ? to.id : path.get(0).id;
+            }
+        }
+
+        // Sort the cities by distance from each city (ties by id), the city itself comes first
+        int size = topology.size();
+        this.nearest = new int[size][];
+        this.ranks = new int[size][size];
+        for (int from = 0; from < size; from++) {
+            double[] fromDistances = this.distances[from];
+            int self = from;
+            this.nearest[from] = IntStream.range(0, size).boxed()
+                    .sorted((c1, c2) -> c1 == self ? -1 : c2 == self ? 1
+                            : fromDistances[c1] != fromDistances[c2] ? Double.compare(fromDistances[c1], fromDistances[c2])
+                            : Integer.compare(c1, c2))
+                    .mapToInt(Integer::intValue).toArray();
+            for (int rank = 0; rank < size; rank++) {
+                this.ranks[from][this.nearest[from][rank]] = rank;
+            }
+        }
+    }
+
+    /**
+     * @return The ids of the k nearest cities of a city, nearest first (the city itself is the first one)
+     */
+    public int[] nearestCities(City city, int k) {
+        return Arrays.copyOf(this.nearest[city.id], Math.min(k, this.nearest[city.id].length));
+    }
+
+    /**
+     * @return True if other is one of the k nearest cities of city (a city is its own nearest), in O(1)
+     */
+    public boolean isNear(City city, City other, int k) {
+        return this.ranks[city.id][other.id] < k;
+    }
+
+    /**
+     * Append to the plan a move to every city of the shortest path from one city to another
+     * (excluding from, including to), like a loop over from.pathTo(to).
+     */
+    public void appendMoves(Plan plan, City from, City to) {
+        int current = from.id;
+        while (current != to.id) {
+            current = this.nextHops[current][to.id];
+            plan.appendMove(this.cities[current]);
+        }
+    }
+
+    /**
+     * @return The shortest distance in km between two cities
+     */
+    public double distance(City from, City to) {
+        return this.distances[from.id][to.id];
+    }
+
+    /**
+     * @return The shortest distance in km between two cities given their ids
+     */
+    public double distance(int fromId, int toId) {
+        return this.distances[fromId][toId];
+    }
+
+    /**
+     * @return The number of cities in the topology
+     */
+    public int size() {
+        return this.distances.length;
+    }
+}
@@ -0,0 +1,30 @@
+package utils;
+
+/**
+ * Zobrist keys for the hash of a solution: a random 64-bit key for each (task stop, vehicle, position),
+ * combined with xor so that changing one stop only changes the hash by two keys.
+ *
+ * The positions are not bounded, so the keys are computed on the fly by mixing the three values
+ * with the splitmix64 finalizer instead of being drawn into a table.
+ */
+public class Zobrist {
+
+    private Zobrist() {}
+
+    /**
+     * @return The key of the pickUp (or the delivery) of a task, at a position of the route of a vehicle
+     */
+    public static long key(int taskId, boolean delivery, int vehicle, int position) {
+        long stop = ((long) taskId << 1) | (delivery ? 1 : 0);
+        return mix(mix(mix(stop + 1) + vehicle) + position);
+    }
+
+    /**
+     * The finalizer of splitmix64: a bijection of the longs that spreads every input bit over the output.
+     */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}